@@ -0,0 +1,204 @@
+package benchmark;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ *
+ * The Harness measures operations for the benchmarks of the planner. Every
+ * operation is run repeatedly during some warmup iterations, so the JIT
+ * compiles it, and then during the measured iterations, each one lasting
+ * a fixed time.
+ *
+ * For every operation it reports the mean time per operation and its
+ * deviation between iterations, the bytes allocated per operation by the
+ * measuring thread, and the garbage collections done while measuring.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class Harness {
+
+	/**
+	 * An operation to be measured. Its result is kept, so the JIT
+	 * cannot remove the work that computes it.
+	 */
+	public interface Operation {
+		Object run() throws Exception;
+	}
+
+	private int warmups;
+	private int iterations;
+	private long iterationNanos;
+	private PrintStream out;
+
+	/* Where the results of the operations are kept */
+	private volatile Object sink;
+
+	/**
+	 * Creates a Harness with a number of warmup and measured iterations,
+	 * lasting iterationMillis each, that writes the results to out.
+	 */
+	public Harness(int warmups, int iterations, long iterationMillis, PrintStream out) {
+		this.warmups = warmups;
+		this.iterations = iterations;
+		this.iterationNanos = iterationMillis * 1000000L;
+		this.out = out;
+	}
+
+	/**
+	 * Writes the header of the table of results.
+	 */
+	public void printHeader() {
+		out.println(String.format("%-44s %14s %12s %14s %8s %8s",
+				"Benchmark", "ns/op", "error", "B/op", "gc", "gc ms"));
+	}
+
+	/**
+	 * Measures an operation and writes its result.
+	 */
+	public Result measure(String name, Operation op) throws Exception {
+		for (int i=0; i<warmups; i++) {
+			iteration(op);
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long gcCount = gcCount();
+		long gcMillis = gcMillis();
+		long bytes = allocatedBytes(threads);
+
+		double[] nsPerOp = new double[iterations];
+		long ops = 0;
+		for (int i=0; i<iterations; i++) {
+			long[] done = iteration(op);
+			nsPerOp[i] = (double) done[1] / done[0];
+			ops += done[0];
+		}
+
+		Result result = new Result(name, mean(nsPerOp), deviation(nsPerOp),
+				(bytes < 0) ? -1 : (double) (allocatedBytes(threads) - bytes) / ops,
+				gcCount() - gcCount, gcMillis() - gcMillis);
+		out.println(result);
+		return result;
+	}
+
+	/**
+	 * Runs an operation for the time of an iteration, returning the
+	 * number of operations and the nanoseconds taken.
+	 */
+	private long[] iteration(Operation op) throws Exception {
+		long ops = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			sink = op.run();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationNanos);
+		return new long[] {ops, elapsed};
+	}
+
+	/**
+	 * Returns the bytes allocated by the current thread, or -1 if the
+	 * virtual machine cannot tell.
+	 */
+	private static long allocatedBytes(ThreadMXBean threads) {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		} else return -1;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	private static double mean(double[] values) {
+		double sum = 0;
+		for (double v : values) {
+			sum += v;
+		}
+		return sum / values.length;
+	}
+
+	private static double deviation(double[] values) {
+		double mean = mean(values);
+		double sum = 0;
+		for (double v : values) {
+			sum += (v - mean) * (v - mean);
+		}
+		return (values.length > 1) ? Math.sqrt(sum / (values.length - 1)) : 0;
+	}
+
+
+	/**
+	 * The result of measuring an operation.
+	 */
+	public static class Result {
+
+		private String name;
+		private double nsPerOp;
+		private double error;
+		private double bytesPerOp;
+		private long gcCount;
+		private long gcMillis;
+
+		private Result(String name, double nsPerOp, double error, double bytesPerOp,
+				long gcCount, long gcMillis) {
+			this.name = name;
+			this.nsPerOp = nsPerOp;
+			this.error = error;
+			this.bytesPerOp = bytesPerOp;
+			this.gcCount = gcCount;
+			this.gcMillis = gcMillis;
+		}
+
+
+		/* Getters and setters */
+
+		public String getName() {
+			return name;
+		}
+
+		public double getNsPerOp() {
+			return nsPerOp;
+		}
+
+		public double getError() {
+			return error;
+		}
+
+		public double getBytesPerOp() {
+			return bytesPerOp;
+		}
+
+		public long getGcCount() {
+			return gcCount;
+		}
+
+		public long getGcMillis() {
+			return gcMillis;
+		}
+
+		public String toString() {
+			return String.format("%-44s %14.1f %12.1f %14.1f %8d %8d",
+					name, nsPerOp, error, bytesPerOp, gcCount, gcMillis);
+		}
+
+	}
+
+}
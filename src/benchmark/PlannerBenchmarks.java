@@ -0,0 +1,189 @@
+package benchmark;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import coffeeServer.CoffeeServer;
+import coffeeServer.ProblemGenerator;
+import coffeeServer.ProblemReader;
+import strips.LinearPlanner;
+import strips.LinearPlannerBuilder;
+import strips.Operator;
+import strips.Parameter;
+import strips.PlannerStack;
+import strips.Predicate;
+import strips.PredicateSet;
+import strips.State;
+import strips.TraceLevel;
+
+/**
+ *
+ * The benchmarks of the planner. They measure the whole execution of the
+ * planner on the bundled problems and on larger generated ones, and the
+ * operations it does most: matching and instantiating operators, translating
+ * parameters in the stack, changing the state, writing the stack and
+ * reading problems.
+ *
+ * Its arguments are optionally the directory of the problem files (the
+ * current one by default) and -quick, for fewer and shorter iterations.
+ * The results are written to the standard output, and can be kept as the
+ * baseline to compare a change with.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlannerBenchmarks {
+
+	private static final String[] PROBLEMS = {"problem1.txt", "problem2.txt", "problem3.txt",
+			"problem4.txt", "problem5.txt"};
+	
+	/* Generated problems: side of the grid, machines and petitions */
+	private static final int[][] GRIDS = {{12, 4, 40}, {30, 8, 200}};
+
+	private Harness harness;
+	private List<String> names;
+	private List<String> texts;
+
+	/**
+	 * Creates the benchmarks for the problems of a directory.
+	 */
+	public PlannerBenchmarks(Harness harness, File dir) throws Exception {
+		this.harness = harness;
+		names = new ArrayList<>();
+		texts = new ArrayList<>();
+		for (String problem : PROBLEMS) {
+			File file = new File(dir, problem);
+			if (file.isFile()) {
+				names.add(problem);
+				texts.add(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+			}
+		}
+		if (texts.isEmpty()) {
+			throw new IllegalArgumentException("No problems found in " + dir);
+		}
+	}
+
+	/**
+	 * Runs all the benchmarks.
+	 */
+	public void run() throws Exception {
+		harness.printHeader();
+		for (int i=0; i<texts.size(); i++) {
+			String text = texts.get(i);
+			harness.measure("executePlan " + names.get(i), () -> solve(text));
+		}
+		for (int[] grid : GRIDS) {
+			String text = new ProblemGenerator(grid[0], grid[0], grid[1], 3, grid[2], 1).generate();
+			harness.measure("executePlan generated " + grid[0] + "x" + grid[0] + ", " + grid[2], 
+					() -> solve(text));
+		}
+
+		/* The rest of benchmarks use the largest problem */
+		String text = texts.get(texts.size()-1);
+		LinearPlanner planner = createPlanner(text);
+		State state = planner.getCurrentState();
+		Operator move = findOperator(planner, "Move");
+
+		Predicate location = new Predicate("Robot-location", new Parameter("o", "o5"));
+		harness.measure("Operator.instantiate", () -> move.instantiate(location));
+
+		Predicate machine = new Predicate("Machine", new Parameter("o", "_o"), new Parameter("n", "3"));
+		harness.measure("State.getCandidates", () -> state.getCandidates(machine));
+
+		PlannerStack stack = new PlannerStack();
+		Parameter variable = new Parameter("o", "_o");
+		Parameter value = new Parameter("o", "o5");
+		harness.measure("PlannerStack.translateParameters (push/pop)", () -> {
+			Predicate pred = new Predicate("Robot-location", new Parameter(variable));
+			stack.push(pred);
+			stack.translateParameters(pred.getParams().get(0), value);
+			return stack.pop();
+		});
+
+		List<Predicate> deletes = Arrays.asList(state.getPredicates().get(0), state.getPredicates().get(1));
+		harness.measure("State.removePredicates (and add back)", () -> {
+			state.removePredicates(deletes);
+			state.addPredicates(deletes);
+			return state;
+		});
+
+		PlannerStack full = createStack(planner, move);
+		harness.measure("PlannerStack.toString", () -> full.toString());
+
+		harness.measure("ProblemReader.readStates", () -> {
+			ProblemReader reader = new ProblemReader(new StringReader(text));
+			reader.readStates();
+			return reader.getGoalState();
+		});
+	}
+
+	/**
+	 * Creates a planner, without log, for the text of a problem.
+	 */
+	private static LinearPlanner createPlanner(String text) throws Exception {
+		ProblemReader reader = new ProblemReader(new StringReader(text));
+		reader.readStates();
+		LinearPlannerBuilder builder = CoffeeServer.createBuilder(reader.getGrid());
+		builder.setInitialState(reader.getInitialState());
+		builder.setFinalState(reader.getGoalState());
+		builder.setTraceLevel(TraceLevel.OFF);
+		return builder.build();
+	}
+
+	/**
+	 * Solves the text of a problem, including reading it, as the
+	 * planner changes the states it is given.
+	 */
+	private static List<Operator> solve(String text) throws Exception {
+		return createPlanner(text).executePlan();
+	}
+
+	private static Operator findOperator(LinearPlanner planner, String name) {
+		for (Operator op : planner.getAvailableOperators()) {
+			if (op.getName().equals(name)) return op;
+		}
+		throw new IllegalArgumentException("No operator " + name);
+	}
+
+	/**
+	 * Creates a stack like the one of the planner once it has selected
+	 * an operator for its first goal: the final state, the goals, and the
+	 * operator with its preconditions.
+	 */
+	private static PlannerStack createStack(LinearPlanner planner, Operator move) {
+		PlannerStack stack = new PlannerStack();
+		stack.push(planner.getFinalState());
+		for (Predicate goal : planner.getFinalState().getPredicates()) {
+			stack.push(goal);
+		}
+		Operator op = move.instantiate(planner.getFinalState().getPredicates().get(0));
+		stack.push(op);
+		stack.push(new PredicateSet(op.getPreconditions()));
+		for (Predicate prec : op.getPreconditions()) {
+			stack.push(prec);
+		}
+		return stack;
+	}
+
+	public static void main(String[] args) throws Exception {
+		File dir = new File(".");
+		boolean quick = false;
+		for (String arg : args) {
+			if (arg.equals("-quick")) {
+				quick = true;
+			} else {
+				dir = new File(arg);
+			}
+		}
+
+		Harness harness = quick ? new Harness(2, 3, 100, System.out)
+				: new Harness(5, 10, 500, System.out);
+		new PlannerBenchmarks(harness, dir).run();
+	}
+
+}
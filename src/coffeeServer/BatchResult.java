@@ -0,0 +1,212 @@
+package coffeeServer;
+
+import java.util.List;
+
+import strips.LinearPlanner;
+import strips.MetricsSnapshot;
+import strips.Operator;
+import strips.PlanResult;
+import strips.State;
+
+/**
+ * 
+ * A BatchResult is the result of solving one problem of a batch: the
+ * plan found, the number of steps of the robot, the iterations of the
+ * planner and its execution time. If the problem could not be solved,
+ * it keeps the error instead, and if the planner was stopped by a limit,
+ * the plan found until then.
+ * 
+ * It can be written as a line of a CSV report or as a JSON line. If the
+ * planner was measured, the result also keeps a snapshot of its metrics.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class BatchResult {
+	
+	public static final String CSV_HEADER = "problem,status,steps,iterations,time,plan,error";
+	
+	private String problem;
+	private String status;
+	private String plan;
+	private String steps;
+	private int iterations;
+	private long time;
+	private String error;
+	private MetricsSnapshot metrics;
+	
+	/**
+	 * Creates the result of a problem solved by a planner.
+	 */
+	public BatchResult(String problem, LinearPlanner planner) {
+		this.problem = problem;
+		status = "solved";
+		plan = planToString(planner.getPlan());
+		steps = getSteps(planner.getCurrentState());
+		iterations = planner.getIteration();
+		time = planner.getTime();
+	}
+	
+	/**
+	 * Creates the result of a problem that could not be solved.
+	 */
+	public BatchResult(String problem, String error) {
+		this.problem = problem;
+		status = "error";
+		plan = "";
+		steps = "";
+		this.error = error;
+	}
+	
+	/**
+	 * Creates the result of a problem executed by a planner with limits. If
+	 * a limit stopped it, the status tells which one, and the plan is the
+	 * part found until then.
+	 */
+	public BatchResult(String problem, LinearPlanner planner, PlanResult result) {
+		this(problem, planner);
+		if (!result.isSolved()) {
+			status = (result.getStatus() == PlanResult.Status.FAILED) ? "error" 
+					: result.getStatus().name().toLowerCase();
+			error = result.getError();
+			plan = planToString(result.getPlan());
+		}
+	}
+	
+	/**
+	 * Returns the operators of a plan separated by semicolons.
+	 */
+	private static String planToString(List<Operator> plan) {
+		StringBuilder s = new StringBuilder();
+		for (int i=0; i<plan.size(); i++) {
+			s.append(plan.get(i).toString());
+			if (i < plan.size()-1) s.append("; ");
+		}
+		return s.toString();
+	}
+	
+	/**
+	 * Returns the value of the Steps fluent of a state.
+	 */
+	private static String getSteps(State state) {
+		return state.hasFluent("Steps") ? Long.toString(state.getFluent("Steps")) : "";
+	}
+	
+	/**
+	 * Returns the result as a line of a CSV report, with the
+	 * columns of the header.
+	 */
+	public String toCsv() {
+		return csv(problem) + "," + status + "," + steps + "," 
+				+ iterations + "," + time + "," + csv(plan) + "," + csv(error == null ? "" : error);
+	}
+	
+	/**
+	 * Returns the result as a JSON object in one line.
+	 */
+	public String toJson() {
+		return toJson("problem");
+	}
+	
+	/**
+	 * Returns the result as a JSON object in one line, with the
+	 * problem under the key given.
+	 */
+	String toJson(String key) {
+		StringBuilder s = new StringBuilder("{");
+		s.append(json(key)).append(':').append(json(problem));
+		s.append(",\"status\":").append(json(status));
+		if (!status.equals("error")) {
+			s.append(",\"steps\":").append(steps.isEmpty() ? "null" : steps);
+			s.append(",\"iterations\":").append(iterations);
+			s.append(",\"time\":").append(time);
+			s.append(",\"plan\":").append(json(plan));
+		}
+		if (error != null) {
+			s.append(",\"error\":").append(json(error));
+		}
+		if (metrics != null) {
+			s.append(",\"metrics\":").append(metrics.toJson());
+		}
+		return s.append('}').toString();
+	}
+	
+	/**
+	 * Quotes a CSV field if it has commas, quotes or line breaks.
+	 */
+	private static String csv(String field) {
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+			return field;
+		}
+		return "\"" + field.replace("\"", "\"\"") + "\"";
+	}
+	
+	/**
+	 * Writes a text as a JSON string, escaping the characters that need it.
+	 */
+	static String json(String text) {
+		if (text == null) return "null";
+		
+		StringBuilder s = new StringBuilder("\"");
+		for (int i=0; i<text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				s.append('\\').append(c);
+			} else if (c == '\n') {
+				s.append("\\n");
+			} else if (c < ' ') {
+				s.append(String.format("\\u%04x", (int) c));
+			} else {
+				s.append(c);
+			}
+		}
+		return s.append('"').toString();
+	}
+	
+	
+	/* Getters and setters */
+	
+	public String getProblem() {
+		return problem;
+	}
+	
+	public boolean isSolved() {
+		return status.equals("solved");
+	}
+	
+	/**
+	 * Returns solved, error, or the limit that stopped the planner.
+	 */
+	public String getStatus() {
+		return status;
+	}
+	
+	public String getPlan() {
+		return plan;
+	}
+	
+	public String getSteps() {
+		return steps;
+	}
+	
+	public int getIterations() {
+		return iterations;
+	}
+	
+	public long getTime() {
+		return time;
+	}
+	
+	public String getError() {
+		return error;
+	}
+	
+	public MetricsSnapshot getMetrics() {
+		return metrics;
+	}
+	
+	public void setMetrics(MetricsSnapshot metrics) {
+		this.metrics = metrics;
+	}
+	
+}
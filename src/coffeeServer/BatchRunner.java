@@ -0,0 +1,275 @@
+package coffeeServer;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import strips.LinearPlanner;
+import strips.LinearPlannerBuilder;
+import strips.MetricsSnapshot;
+import strips.PlannerBuilderException;
+import strips.PlannerMetrics;
+import strips.PlanResult;
+import strips.TraceLevel;
+
+/**
+ *
+ * The BatchRunner solves many Coffee Server problems in the same execution,
+ * several of them at the same time in a pool of threads. Every problem is
+ * solved by its own planner, built from its own domain, so the planners
+ * share nothing.
+ *
+ * The results of all the problems are written in a single report, in the
+ * order the problems were given, as CSV (by default) or JSON lines.
+ *
+ * Its arguments are the problem files or directories of problem files, and
+ * optionally: -threads n (the number of processors by default), -report file
+ * (the standard output by default), -format csv or json, -ordering
+ * distance or tour, for the petitions, -metrics file, where the metrics
+ * of every planner are written as JSON lines, followed by their total, and
+ * -timeout ms, after which a planner is stopped (none by default).
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class BatchRunner {
+
+	private int threads;
+	private StandardHeuristics.Ordering ordering;
+	private boolean measured;
+	private long timeout;
+
+	/**
+	 * Creates a BatchRunner that solves problems with a number of threads.
+	 */
+	public BatchRunner(int threads) {
+		this(threads, StandardHeuristics.Ordering.DISTANCE);
+	}
+
+	/**
+	 * Creates a BatchRunner that solves problems with a number of threads,
+	 * ordering their petitions in a given way.
+	 */
+	public BatchRunner(int threads, StandardHeuristics.Ordering ordering) {
+		this.threads = threads;
+		this.ordering = ordering;
+	}
+
+	/**
+	 * Solves a list of problem files, returning their results in the same order.
+	 */
+	public List<BatchResult> run(List<String> problems) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<BatchResult>> futures = new ArrayList<>();
+			for (String problem : problems) {
+				futures.add(pool.submit(() -> solve(problem, ordering, measured, timeout)));
+			}
+
+			List<BatchResult> results = new ArrayList<>();
+			for (int i=0; i<futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					/* An unexpected error only fails its own problem */
+					results.add(new BatchResult(problems.get(i), String.valueOf(e.getCause())));
+				}
+			}
+			return results;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Solves a problem file with a new planner, without log.
+	 */
+	public static BatchResult solve(String problem) {
+		return solve(problem, StandardHeuristics.Ordering.DISTANCE);
+	}
+
+	/**
+	 * Solves a problem file with a new planner, without log, ordering its
+	 * petitions in a given way.
+	 */
+	public static BatchResult solve(String problem, StandardHeuristics.Ordering ordering) {
+		return solve(problem, ordering, false, 0L);
+	}
+
+	/**
+	 * Solves a problem file like the previous method, keeping the metrics
+	 * of the planner in the result if it is measured, and stopping the
+	 * planner after timeout milliseconds, unless it is 0.
+	 */
+	public static BatchResult solve(String problem, StandardHeuristics.Ordering ordering, 
+			boolean measured, long timeout) {
+		PlannerMetrics metrics = measured ? new PlannerMetrics() : null;
+		try {
+			ProblemReader reader = new ProblemReader(problem);
+			reader.readStates();
+
+			LinearPlannerBuilder builder = CoffeeServer.createBuilder(reader.getGrid(), ordering);
+			builder.setInitialState(reader.getInitialState());
+			builder.setFinalState(reader.getGoalState());
+			builder.setTraceLevel(TraceLevel.OFF);
+			if (measured) {
+				builder.addListener(metrics);
+			}
+
+			LinearPlanner planner = builder.build();
+			PlanResult result = planner.executePlan(timeout, 0, null);
+			return measure(new BatchResult(problem, planner, result), metrics);
+		} catch (IOException e1) {
+			return new BatchResult(problem, "Could not read the problem");
+		} catch (PlannerBuilderException e2) {
+			return new BatchResult(problem, "LinearPlanner was not properly created");
+		}
+	}
+
+	/**
+	 * Keeps in a result the metrics of its planner, if it was measured.
+	 */
+	private static BatchResult measure(BatchResult result, PlannerMetrics metrics) {
+		if (metrics != null) {
+			result.setMetrics(metrics.snapshot());
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the metrics of every result as a JSON line, and then
+	 * their total.
+	 */
+	private static void writeMetrics(List<BatchResult> results, PrintStream out) {
+		MetricsSnapshot total = new MetricsSnapshot();
+		for (BatchResult result : results) {
+			if (result.getMetrics() != null) {
+				out.println("{\"problem\":" + BatchResult.json(result.getProblem()) 
+						+ ",\"metrics\":" + result.getMetrics().toJson() + "}");
+				total = total.plus(result.getMetrics());
+			}
+		}
+		out.println("{\"total\":" + total.toJson() + "}");
+	}
+
+	/**
+	 * Adds to the list the problem files of a path. If it is a directory,
+	 * all its files are added, sorted by name.
+	 */
+	private static void addProblems(String path, List<String> problems) {
+		File file = new File(path);
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			Arrays.sort(files);
+			for (File f : files) {
+				if (f.isFile()) {
+					problems.add(f.getPath());
+				}
+			}
+		} else {
+			problems.add(path);
+		}
+	}
+
+
+	/* Getters and setters */
+
+	public boolean isMeasured() {
+		return measured;
+	}
+
+	/**
+	 * Makes the runner keep the metrics of the planner of every problem.
+	 */
+	public void setMeasured(boolean measured) {
+		this.measured = measured;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Sets the milliseconds after which a planner is stopped. With 0,
+	 * planners are never stopped.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		String report = null;
+		String metrics = null;
+		long timeout = 0L;
+		boolean json = false;
+		StandardHeuristics.Ordering ordering = StandardHeuristics.Ordering.DISTANCE;
+		List<String> problems = new ArrayList<>();
+
+		/* Reads the options and the problems given */
+		try {
+			for (int i=0; i<args.length; i++) {
+				if (args[i].equals("-threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-report")) {
+					report = args[++i];
+				} else if (args[i].equals("-format")) {
+					json = args[++i].equalsIgnoreCase("json");
+				} else if (args[i].equals("-timeout")) {
+					timeout = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-metrics")) {
+					metrics = args[++i];
+				} else if (args[i].equals("-ordering")) {
+					ordering = StandardHeuristics.Ordering.valueOf(args[++i].toUpperCase());
+				} else {
+					addProblems(args[i], problems);
+				}
+			}
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.out.println("Error: Wrong options.");
+			System.exit(1);
+		}
+		if (problems.isEmpty() || threads < 1) {
+			System.out.println("Error: Please indicate the problems to solve.");
+			System.exit(1);
+		}
+
+		try {
+			BatchRunner runner = new BatchRunner(threads, ordering);
+			runner.setMeasured(metrics != null);
+			runner.setTimeout(timeout);
+			List<BatchResult> results = runner.run(problems);
+
+			/* Writes the report of all the problems */
+			PrintStream out = (report == null) ? System.out : new PrintStream(report);
+			if (!json) {
+				out.println(BatchResult.CSV_HEADER);
+			}
+			for (BatchResult result : results) {
+				out.println(json ? result.toJson() : result.toCsv());
+			}
+			out.flush();
+			if (out != System.out) {
+				out.close();
+			}
+			if (metrics != null) {
+				try (PrintStream metricsOut = new PrintStream(metrics)) {
+					writeMetrics(results, metricsOut);
+				}
+			}
+		} catch (FileNotFoundException e1) {
+			System.out.println("Error: Could not write the report.");
+		} catch (InterruptedException e2) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -1,5 +1,6 @@
 package coffeeServer;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
@@ -15,8 +16,18 @@ import strips.*;
  * a robot is located, as well as coffee machines and coffee petitions. The
  * robot has to serve all of them and end up in a specific position.
  * 
- * It contains a special predicate: the Steps(x), which indicates the number
- * of path found by the robot.
+ * It contains a numeric fluent: the Steps, which indicates the number
+ * of path found by the robot. It is given in the problem as Steps(x).
+ * 
+ * The problem is given as the first argument, and its grid is 6x6 unless
+ * the problem tells otherwise. Optionally, the next ones indicate the
+ * level of the log (off, plan, summary or full, by default), tour for
+ * ordering the petitions as a tour through the machines, metrics for
+ * writing the metrics of the planner to the standard output, and stream for
+ * writing there every operator of the plan as soon as it is found, and
+ * ground for grounding the problem before planning.
+ * With events, the full log is written as a stream of binary events, that
+ * can be turned into the text log by the TraceReplayer.
  * 
  * @author Javier Beltran, Jorge Rodriguez
  *
@@ -30,8 +41,104 @@ public class CoffeeServer {
 			System.exit(1);
 		}
 		String problem = args[0];
+		TraceLevel traceLevel = TraceLevel.FULL;
+		boolean events = false;
+		PlannerMetrics metrics = null;
+		boolean stream = false;
+		boolean grounding = false;
+		StandardHeuristics.Ordering ordering = StandardHeuristics.Ordering.DISTANCE;
+		for (int i=1; i<args.length; i++) {
+			if (args[i].equalsIgnoreCase("events")) {
+				events = true;
+			} else if (args[i].equalsIgnoreCase("tour")) {
+				ordering = StandardHeuristics.Ordering.TOUR;
+			} else if (args[i].equalsIgnoreCase("metrics")) {
+				metrics = new PlannerMetrics();
+			} else if (args[i].equalsIgnoreCase("stream")) {
+				stream = true;
+			} else if (args[i].equalsIgnoreCase("ground")) {
+				grounding = true;
+			} else {
+				try {
+					traceLevel = TraceLevel.valueOf(args[i].toUpperCase());
+				} catch (IllegalArgumentException e) {
+					System.out.println("Error: Unknown log level " + args[i] + ".");
+					System.exit(1);
+				}
+			}
+		}
 		
-		/* Creates a builder for the planner */
+		try {
+			/* Reads the initial and final state of the problem */
+			ProblemReader reader = new ProblemReader(problem);
+			reader.readStates();
+			State initialState = reader.getInitialState();
+			State goalState = reader.getGoalState();
+			
+			/* Creates a builder for the planner with the domain of the problem in its grid */
+			LinearPlannerBuilder builder = createBuilder(reader.getGrid(), ordering);
+			builder.setInitialState(initialState);
+			builder.setFinalState(goalState);
+			builder.setTraceLevel(traceLevel);
+			builder.setGrounding(grounding);
+			if (events) {
+				builder.setTraceSink(new EventTraceSink(new FileOutputStream("log_" + problem + ".events")));
+			} else if (traceLevel != TraceLevel.OFF) {
+				builder.setLogOutput(new PrintStream("log_" + problem));
+			}
+			if (metrics != null) {
+				builder.addListener(metrics);
+			}
+			
+			/* Creates the planner and executes it, writing the plan as it is found if streamed */
+			LinearPlanner planner = builder.build();
+			if (stream) {
+				for (Operator op : PlanStream.start(planner)) {
+					System.out.println(op);
+				}
+			} else {
+				planner.executePlan();
+			}
+			planner.logPlan();
+			planner.logSteps();
+			planner.closeLog();
+			if (metrics != null) {
+				System.out.print(metrics.snapshot());
+			}
+		} catch (IOException e1) {
+			System.out.println("Error: Could not read/write.");
+		} catch (PlannerBuilderException e2) {
+			System.out.println("Error: LinearPlanner was not properly created.");
+		} catch (PlanningException e3) {
+			System.out.println("Error: " + e3.getMessage());
+		}
+	}
+	
+	/**
+	 * Creates a builder for a planner with the domain of the Coffee Server
+	 * problem in the grid of the bundled problems.
+	 */
+	public static LinearPlannerBuilder createBuilder() {
+		return createBuilder(Grid.getDefault());
+	}
+	
+	/**
+	 * Creates a builder for a planner with the domain of the Coffee Server
+	 * problem in a grid: its predicates, operators and heuristics. Only the initial
+	 * and final states, and the log, have to be indicated before building it.
+	 * 
+	 * Every builder has its own domain, so the planners built from different
+	 * builders share nothing and can be executed at the same time.
+	 */
+	public static LinearPlannerBuilder createBuilder(Grid grid) {
+		return createBuilder(grid, StandardHeuristics.Ordering.DISTANCE);
+	}
+	
+	/**
+	 * Creates a builder for a planner with the domain of the Coffee Server
+	 * problem in a grid, whose heuristics order the petitions in a given way.
+	 */
+	public static LinearPlannerBuilder createBuilder(Grid grid, StandardHeuristics.Ordering ordering) {
 		LinearPlannerBuilder builder = new LinearPlannerBuilder();
 		List<Predicate> availablePredicates = new ArrayList<>();
 		List<Operator> availableOperators = new ArrayList<>();
@@ -41,7 +148,6 @@ public class CoffeeServer {
 		Parameter paramO1 = new Parameter("o", "_o1");
 		Parameter paramO2 = new Parameter("o", "_o2");
 		Parameter paramN = new Parameter("n", "_n");
-		Parameter paramX = new Parameter("x", "_x");
 		
 		/* Defines the predicates available */
 		Predicate robotLocation = new Predicate("Robot-location", paramO);
@@ -52,47 +158,23 @@ public class CoffeeServer {
 		Predicate petition = new Predicate("Petition", paramO, paramN);
 		Predicate served = new Predicate("Served", paramO);
 		Predicate machine = new Predicate("Machine", paramO, paramN);
-		Predicate steps = new Predicate("Steps", paramX);
 		availablePredicates.addAll(Arrays.asList(robotLocation, robotFree,
-				robotLoaded, petition, served, machine, steps));
+				robotLoaded, petition, served, machine));
 		
 		/* Defines the operators available */
 		Operator make = new Operator("Make", Arrays.asList(robotLocation, robotFree, machine),
 				Arrays.asList(robotLoaded), Arrays.asList(robotFree), paramO, paramN);
-		Operator move = new MoveOperator(Arrays.asList(robotLocationO1, steps), 
-				Arrays.asList(robotLocationO2, steps), Arrays.asList(robotLocationO1, steps), paramO1, paramO2);
+		Operator move = new MoveOperator(grid, Arrays.asList(robotLocationO1), 
+				Arrays.asList(robotLocationO2), Arrays.asList(robotLocationO1), paramO1, paramO2);
 		Operator serve = new Operator("Serve", Arrays.asList(robotLocation, robotLoaded, petition),
 				Arrays.asList(served, robotFree), Arrays.asList(petition, robotLoaded), paramO, paramN);
 		availableOperators.addAll(Arrays.asList(make, move, serve));
 		
-		/* Defines the heuristics used */
-		Intelligence intelligence = new StandardHeuristics();
-		
-		try {
-			/* Reads the initial and final state of the problem */
-			ProblemReader reader = new ProblemReader(problem);
-			reader.readStates();
-			State initialState = reader.getInitialState();
-			State goalState = reader.getGoalState();
-			
-			/* Adds to the builder all the information of the problem */
-			builder.addPredicates(availablePredicates);
-			builder.addOperators(availableOperators);
-			builder.setInitialState(initialState);
-			builder.setFinalState(goalState);
-			builder.setIntelligence(intelligence);
-			builder.setLogOutput(new PrintStream("log_" + problem));
-			
-			/* Creates the planner and executes it */
-			LinearPlanner planner = builder.build();
-			planner.executePlan();
-			planner.logPlan();
-			planner.logSteps();
-		} catch (IOException e1) {
-			System.out.println("Error: Could not read/write.");
-		} catch (PlannerBuilderException e2) {
-			System.out.println("Error: LinearPlanner was not properly created.");
-		}
+		/* Adds the domain to the builder, with the heuristics used */
+		builder.addPredicates(availablePredicates);
+		builder.addOperators(availableOperators);
+		builder.setIntelligence(new StandardHeuristics(grid, ordering));
+		return builder;
 	}
 	
 }
@@ -0,0 +1,166 @@
+package coffeeServer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import strips.SymbolTable;
+
+/**
+ * 
+ * A Grid is the floor where the robot of the Coffee Server problem moves.
+ * Its positions are named o1, o2... row by row, starting from the upper
+ * left corner, so in a grid 6 positions wide o7 is below o1.
+ * 
+ * The position named by a symbol is found from its name, without
+ * registering the names of all the positions in the SymbolTable, so a
+ * grid takes the same small memory whatever its size, and it does not
+ * depend on the table the problem uses. The coordinates of a position
+ * are computed from its number, so the Manhattan distance between two
+ * positions, used as the number of steps of the robot, takes a few
+ * operations.
+ * 
+ * Grids are immutable, so the ones created by size with of or parse are
+ * shared: the problems of the same size use the same grid.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class Grid {
+	
+	/* Maximum number of grids shared, so unusual sizes do not fill the memory */
+	private static final int MAX_SHARED = 64;
+	
+	/* Grids shared, by their width and height */
+	private static final ConcurrentMap<Long, Grid> GRIDS = new ConcurrentHashMap<>();
+	
+	/* The grid of the bundled problems, used if a problem does not tell */
+	private static final Grid DEFAULT = of(6, 6);
+	
+	private int width;
+	private int height;
+	
+	/**
+	 * Creates a grid of width x height positions.
+	 */
+	public Grid(int width, int height) {
+		if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Wrong size of the grid: " + width + "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+	}
+	
+	/**
+	 * Returns the grid of width x height positions, shared with the other
+	 * problems of the same size.
+	 */
+	public static Grid of(int width, int height) {
+		Long size = ((long) width << 32) | (height & 0xFFFFFFFFL);
+		Grid grid = GRIDS.get(size);
+		if (grid == null) {
+			grid = new Grid(width, height);
+			if (GRIDS.size() < MAX_SHARED) {
+				Grid previous = GRIDS.putIfAbsent(size, grid);
+				if (previous != null) grid = previous;
+			}
+		}
+		return grid;
+	}
+	
+	/**
+	 * Returns the grid of the bundled problems, 6 positions wide and high.
+	 */
+	public static Grid getDefault() {
+		return DEFAULT;
+	}
+	
+	/**
+	 * Creates a grid from its size written as WxH, like 6x6.
+	 */
+	public static Grid parse(String size) {
+		String[] parts = size.trim().toLowerCase().split("x");
+		if (parts.length != 2) {
+			throw new IllegalArgumentException("Wrong size of the grid: " + size);
+		}
+		return of(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+	}
+	
+	/**
+	 * Returns the position of the grid named by a symbol, given its
+	 * identifier in the current SymbolTable.
+	 */
+	public int getCell(int symbol) {
+		SymbolTable table = SymbolTable.current();
+		String name = (symbol >= 0 && symbol < table.size()) ? table.symbol(symbol) : "unknown";
+		return getCell(name);
+	}
+	
+	/**
+	 * Returns the position of the grid with a name, like o7.
+	 */
+	public int getCell(String name) {
+		/* The name must be the one given by location, without leading zeros */
+		long number = 0;
+		boolean valid = name.length() > 1 && name.length() <= 11 && name.charAt(0) == 'o' 
+				&& name.charAt(1) != '0';
+		for (int i=1; valid && i<name.length(); i++) {
+			char c = name.charAt(i);
+			valid = c >= '0' && c <= '9';
+			number = number * 10 + (c - '0');
+		}
+		if (!valid || number > (long) width * height) {
+			throw new IllegalArgumentException("Position " + name + " is not in the grid " + this);
+		}
+		return (int) number - 1;
+	}
+	
+	/**
+	 * Calculates the Manhattan distance between two positions, given the
+	 * identifiers of their names.
+	 */
+	public int distance(int symbol1, int symbol2) {
+		return cellDistance(getCell(symbol1), getCell(symbol2));
+	}
+	
+	/**
+	 * Calculates the Manhattan distance between two positions, given their names.
+	 */
+	public int distance(String o1, String o2) {
+		return cellDistance(getCell(o1), getCell(o2));
+	}
+	
+	private int cellDistance(int cell1, int cell2) {
+		return Math.abs(getX(cell2) - getX(cell1)) + Math.abs(getY(cell2) - getY(cell1));
+	}
+	
+	/**
+	 * Returns the name of a position of the grid.
+	 */
+	public static String location(int cell) {
+		return "o" + (cell + 1);
+	}
+	
+	
+	/* Getters and setters */
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public int getX(int cell) {
+		return cell % width;
+	}
+	
+	public int getY(int cell) {
+		return cell / width;
+	}
+	
+	public String toString() {
+		return width + "x" + height;
+	}
+	
+}
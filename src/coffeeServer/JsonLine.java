@@ -0,0 +1,128 @@
+package coffeeServer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 
+ * A JsonLine reads the requests received by the PlannerDaemon: a flat
+ * JSON object in one line, whose values are strings, numbers, booleans
+ * or null. Nested objects and arrays are not supported.
+ * 
+ * The values are returned as text, so {"priority": 5} gives "5".
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class JsonLine {
+	
+	private String text;
+	private int pos;
+	
+	private JsonLine(String text) {
+		this.text = text;
+		pos = 0;
+	}
+	
+	/**
+	 * Parses a line with a JSON object, or throws an IllegalArgumentException
+	 * if it is not well formed.
+	 */
+	public static Map<String, String> parse(String line) {
+		return new JsonLine(line).readObject();
+	}
+	
+	private Map<String, String> readObject() {
+		Map<String, String> values = new LinkedHashMap<>();
+		expect('{');
+		if (peek() == '}') {
+			pos++;
+		} else {
+			boolean more = true;
+			while (more) {
+				String key = readString();
+				expect(':');
+				values.put(key, readValue());
+				more = peek() == ',';
+				if (more) {
+					pos++;
+				} else {
+					expect('}');
+				}
+			}
+		}
+		if (peek() != 0) {
+			throw new IllegalArgumentException("Unexpected text at " + pos);
+		}
+		return values;
+	}
+	
+	private String readValue() {
+		char c = peek();
+		if (c == '"') {
+			return readString();
+		}
+		
+		/* Numbers, booleans and null are read as they are */
+		int start = pos;
+		while (pos < text.length() && ",} \t".indexOf(text.charAt(pos)) < 0) {
+			pos++;
+		}
+		String value = text.substring(start, pos);
+		if (value.isEmpty() || c == '{' || c == '[') {
+			throw new IllegalArgumentException("Unsupported value at " + start);
+		}
+		return value.equals("null") ? null : value;
+	}
+	
+	private String readString() {
+		expect('"');
+		StringBuilder s = new StringBuilder();
+		while (true) {
+			char c = next();
+			if (c == '"') {
+				return s.toString();
+			} else if (c != '\\') {
+				s.append(c);
+			} else {
+				char e = next();
+				switch (e) {
+				case 'n': s.append('\n'); break;
+				case 't': s.append('\t'); break;
+				case 'r': s.append('\r'); break;
+				case 'b': s.append('\b'); break;
+				case 'f': s.append('\f'); break;
+				case 'u':
+					s.append((char) Integer.parseInt("" + next() + next() + next() + next(), 16));
+					break;
+				default: s.append(e);
+				}
+			}
+		}
+	}
+	
+	private char next() {
+		if (pos >= text.length()) {
+			throw new IllegalArgumentException("Unterminated string");
+		}
+		return text.charAt(pos++);
+	}
+	
+	/**
+	 * Skips the blanks and returns the next character, or 0 at the end.
+	 */
+	private char peek() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+		return (pos < text.length()) ? text.charAt(pos) : 0;
+	}
+	
+	private void expect(char c) {
+		if (peek() != c) {
+			throw new IllegalArgumentException("Expected " + c + " at " + pos);
+		}
+		pos++;
+	}
+	
+}
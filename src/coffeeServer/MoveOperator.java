@@ -1,11 +1,12 @@
 package coffeeServer;
 
+import java.util.Arrays;
 import java.util.List;
 
+import strips.NumericEffect;
 import strips.Operator;
 import strips.Parameter;
 import strips.Predicate;
-import strips.State;
 
 /**
  * 
@@ -25,87 +26,71 @@ import strips.State;
  */
 public class MoveOperator extends Operator {
 	
+	private Grid grid;
+	
 	/**
 	 * Creates a MoveOperator with some params and a list of preconditions,
-	 * adds and deletes.
+	 * adds and deletes, for the grid of the bundled problems.
 	 */
 	public MoveOperator(List<Predicate> preconditions, 
 			List<Predicate> adds, List<Predicate> deletes, Parameter... params) {
-		super("Move", preconditions, adds, deletes, params);
+		this(Grid.getDefault(), preconditions, adds, deletes, params);
+	}
+	
+	/**
+	 * Creates a MoveOperator for a grid, with some params and a list of
+	 * preconditions, adds and deletes. Moving increases the Steps fluent
+	 * by the distance from o1 to o2, given Move(o1,o2).
+	 */
+	public MoveOperator(Grid grid, List<Predicate> preconditions, 
+			List<Predicate> adds, List<Predicate> deletes, Parameter... params) {
+		super("Move", preconditions, adds, deletes, Arrays.asList(steps(grid)), params);
+		this.grid = grid;
 	}
 	
 	/**
-	 * Creates a copy of an existing MoveOperator.
+	 * Creates a copy of an existing MoveOperator, in the same grid.
 	 */
-	public MoveOperator(Operator op) {
+	public MoveOperator(MoveOperator op) {
 		super(op);
+		grid = op.grid;
+	}
+	
+	/**
+	 * Creates a copy of this MoveOperator, to be instantiated.
+	 */
+	protected MoveOperator copy() {
+		return new MoveOperator(this);
 	}
 	
 	/**
 	 * Instantiates a Move(o1, o2) with a predicate Robot-location(o).
 	 */
 	public MoveOperator instantiate(Predicate pred) {
-		MoveOperator copiedOp = new MoveOperator(this);
-		/* Updates parameters of operator with the ones of predicate */
-		copiedOp.setParams(updateList(pred.getParams(), copiedOp.getParams()));
-		
-		/* Updates parameters for the predicates in preconditions, adds and deletes */
-		for (Predicate prec : copiedOp.getPreconditions()) {
-			prec.setParams(updateList(pred.getParams(), prec.getParams()));
-		}
-		for (Predicate add : copiedOp.getAdds()) {
-			add.setParams(updateList(pred.getParams(), add.getParams()));
-		}
-		for (Predicate del : copiedOp.getDeletes()) {
-			del.setParams(updateList(pred.getParams(), del.getParams()));
-		}
-				
-		return copiedOp;
+		return (MoveOperator) super.instantiate(pred);
 	}
 	
 	/**
-	 * Updates a list of parameters from an operator using the parameters of a
-	 * predicate. It takes into account that only the second parameter of the
-	 * Move operator should be instantiated.
+	 * Only the second parameter of the Move operator should be instantiated
+	 * by the predicate, that is, the variables ending with 2.
 	 */
-	private List<Parameter> updateList(List<Parameter> copy, List<Parameter> paste) {
-		for (int i=0; i<paste.size(); i++) {
-			for (int j=0; j<copy.size(); j++) {
-				if (paste.get(i).getValue().endsWith("2") && 
-						paste.get(i).getName().equals(copy.get(j).getName())) {
-					paste.get(i).setValue(copy.get(j).getValue());
-				}
-			}
-		}
-		return paste;
+	protected boolean isInstantiatedBy(Parameter variable) {
+		return variable.getValue().endsWith("2");
 	}
 	
 	/**
-	 * Applies the Move operator to the state, that is, it adds and deletes the
-	 * predicates specified in the adds and deletes tables. Also, the steps(x)
-	 * predicate is properly treated, so as to be added with the value of steps(x)
-	 * plus the distance from o1 to o2, given Move(o1,o2).
+	 * Creates the effect of a Move on the Steps fluent in a grid.
 	 */
-	public void apply(State state) {
-		/* Searches the Serve(x) predicate, retrieves x and updates it with the new steps */
-		int x = 0;
-		for (int i=0; i<state.getPredicates().size(); i++) {
-			if (state.getPredicates().get(i).getName().equals("Steps")) {
-				x = Integer.parseInt(state.getPredicates().get(i).getParams().get(0).getValue());
-			}
-		}
-		x += Distance.manhattanDistance(this.getParams().get(0).getValue(), 
-				this.getParams().get(1).getValue());
-		
-		/* Updates adds and deletes from the state */
-		state.removePredicates(this.getDeletes());
-		state.getPredicates().addAll(this.getAdds());
-		
-		/* Instantiates Serve(x) as Serve(x + distance(o1,o2) */
-		for (int i=0; i<state.getPredicates().size(); i++) {
-			if (state.getPredicates().get(i).getName().equals("Steps")) {
-				state.getPredicates().get(i).getParams().get(0).setValue(new Integer(x).toString());
-			}
-		}
+	private static NumericEffect steps(Grid grid) {
+		return new NumericEffect(NumericEffect.Kind.INCREASE, "Steps", 
+				op -> grid.distance(op.getParams().get(0).getValueId(), op.getParams().get(1).getValueId()));
 	}
+	
+	
+	/* Getters and setters */
+	
+	public Grid getGrid() {
+		return grid;
+	}
+	
 }
@@ -0,0 +1,217 @@
+package coffeeServer;
+
+/**
+ *
+ * A PetitionTour finds a good order for serving the petitions of a Coffee
+ * Server problem, as a routing problem. Serving a petition takes the robot
+ * from where it is to a machine of the size asked, and from there to the
+ * petition. After the last one, the robot goes to its final location.
+ *
+ * The order is built with the nearest neighbour heuristic, and improved
+ * with 2-opt (reversing a part of the tour) and Or-opt (moving one to three
+ * consecutive petitions elsewhere) while they find better orders and there
+ * is time left.
+ *
+ * As going to a petition depends on its machine, the cost of going from one
+ * petition to another is not the same in both ways, and reversing a part of
+ * the tour changes the cost of all of it. The cost of the tour in both ways
+ * is kept as prefix sums, so every move is evaluated in constant time.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PetitionTour {
+
+	/* Longest part of the tour moved by Or-opt */
+	private static final int SEGMENT = 3;
+
+	private Grid grid;
+	private int start;
+	private int end;
+	private int[] petitions;
+	private int[] machines;
+
+	/* Steps from the machine of every petition to the petition */
+	private int[] inner;
+
+	/**
+	 * Creates a PetitionTour in a grid, from the cell where the robot starts
+	 * to the one where it ends (or -1 if it can end anywhere), with the cells
+	 * of the petitions and the cells of the machines that serve them.
+	 */
+	public PetitionTour(Grid grid, int start, int end, int[] petitions, int[] machines) {
+		this.grid = grid;
+		this.start = start;
+		this.end = end;
+		this.petitions = petitions;
+		this.machines = machines;
+		inner = new int[petitions.length];
+		for (int i=0; i<petitions.length; i++) {
+			inner[i] = distance(machines[i], petitions[i]);
+		}
+	}
+
+	/**
+	 * Returns the order in which the petitions are served, as their indexes,
+	 * improving it during at most budgetNanos nanoseconds.
+	 */
+	public int[] solve(long budgetNanos) {
+		long deadline = System.nanoTime() + budgetNanos;
+		int[] tour = nearestNeighbour();
+
+		boolean improved = true;
+		while (improved && System.nanoTime() < deadline) {
+			improved = twoOpt(tour, deadline);
+			improved = orOpt(tour, deadline) || improved;
+		}
+		return tour;
+	}
+
+	/**
+	 * Returns the steps of serving the petitions in the order of a tour.
+	 */
+	public int cost(int[] tour) {
+		int cost = 0;
+		for (int i=0; i<=tour.length; i++) {
+			cost += edge(tour, i-1, i);
+		}
+		return cost;
+	}
+
+	/**
+	 * Builds a tour serving every time the petition that is reached
+	 * with fewer steps from the current one.
+	 */
+	private int[] nearestNeighbour() {
+		int n = petitions.length;
+		int[] tour = new int[n];
+		boolean[] served = new boolean[n];
+		int at = start;
+		for (int k=0; k<n; k++) {
+			int best = -1;
+			int bestCost = Integer.MAX_VALUE;
+			for (int i=0; i<n; i++) {
+				if (!served[i]) {
+					int cost = distance(at, machines[i]) + inner[i];
+					if (cost < bestCost) {
+						best = i;
+						bestCost = cost;
+					}
+				}
+			}
+			tour[k] = best;
+			served[best] = true;
+			at = petitions[best];
+		}
+		return tour;
+	}
+
+	/**
+	 * Reverses the parts of the tour that make it shorter. Returns
+	 * whether any has been reversed.
+	 */
+	private boolean twoOpt(int[] tour, long deadline) {
+		int n = tour.length;
+		boolean improved = false;
+		long[] forward = new long[n+1];
+		long[] backward = new long[n+1];
+		prefixes(tour, forward, backward);
+
+		for (int i=0; i<n-1 && System.nanoTime() < deadline; i++) {
+			for (int j=i+1; j<n; j++) {
+				/* Reverses tour[i..j], between tour[i-1] and tour[j+1] */
+				long before = edge(tour, i-1, i) + (forward[j] - forward[i]) + edge(tour, j, j+1);
+				long after = edge(tour, i-1, j) + (backward[j] - backward[i]) + edge(tour, i, j+1);
+				if (after < before) {
+					reverse(tour, i, j);
+					prefixes(tour, forward, backward);
+					improved = true;
+				}
+			}
+		}
+		return improved;
+	}
+
+	/**
+	 * Moves parts of up to SEGMENT petitions to where they make the tour
+	 * shorter. Returns whether any has been moved.
+	 */
+	private boolean orOpt(int[] tour, long deadline) {
+		int n = tour.length;
+		boolean improved = false;
+		for (int length=1; length<=SEGMENT; length++) {
+			for (int i=0; i+length<=n && System.nanoTime() < deadline; i++) {
+				int j = i + length - 1;
+				/* Steps saved by taking tour[i..j] out */
+				long removed = edge(tour, i-1, i) + edge(tour, j, j+1) - edge(tour, i-1, j+1);
+
+				for (int k=-1; k<n; k++) {
+					/* Puts the part between tour[k] and tour[k+1] */
+					if (k >= i-1 && k <= j) continue;
+					long added = edge(tour, k, i) + edge(tour, j, k+1) - edge(tour, k, k+1);
+					if (added < removed) {
+						move(tour, i, j, k);
+						improved = true;
+						break;
+					}
+				}
+			}
+		}
+		return improved;
+	}
+
+	/**
+	 * Keeps the cost of the first i petitions of the tour in forward[i],
+	 * and the cost of serving them in the opposite order in backward[i].
+	 */
+	private void prefixes(int[] tour, long[] forward, long[] backward) {
+		forward[0] = 0;
+		backward[0] = 0;
+		for (int i=1; i<tour.length; i++) {
+			forward[i] = forward[i-1] + edge(tour, i-1, i);
+			backward[i] = backward[i-1] + edge(tour, i, i-1);
+		}
+	}
+
+	/**
+	 * Returns the steps from the petition at position a of the tour to the
+	 * one at position b, where -1 is the start and tour.length is the end.
+	 */
+	private int edge(int[] tour, int a, int b) {
+		int from = (a < 0) ? start : petitions[tour[a]];
+		if (b >= tour.length) {
+			return (end < 0) ? 0 : distance(from, end);
+		}
+		return distance(from, machines[tour[b]]) + inner[tour[b]];
+	}
+
+	private static void reverse(int[] tour, int i, int j) {
+		for (; i < j; i++, j--) {
+			int swapped = tour[i];
+			tour[i] = tour[j];
+			tour[j] = swapped;
+		}
+	}
+
+	/**
+	 * Moves tour[i..j] after the position k.
+	 */
+	private static void move(int[] tour, int i, int j, int k) {
+		int length = j - i + 1;
+		int[] segment = new int[length];
+		System.arraycopy(tour, i, segment, 0, length);
+		if (k > j) {
+			System.arraycopy(tour, j+1, tour, i, k - j);
+			System.arraycopy(segment, 0, tour, k - length + 1, length);
+		} else {
+			System.arraycopy(tour, k+1, tour, k+1 + length, i - k - 1);
+			System.arraycopy(segment, 0, tour, k+1, length);
+		}
+	}
+
+	private int distance(int cell1, int cell2) {
+		return Math.abs(grid.getX(cell1) - grid.getX(cell2))
+				+ Math.abs(grid.getY(cell1) - grid.getY(cell2));
+	}
+
+}
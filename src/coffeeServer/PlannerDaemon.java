@@ -0,0 +1,509 @@
+package coffeeServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import strips.LinearPlanner;
+import strips.LinearPlannerBuilder;
+import strips.PlanCache;
+import strips.PlannerBuilderException;
+import strips.PlanResult;
+import strips.SymbolTable;
+import strips.SymbolTableFullException;
+import strips.TraceLevel;
+
+/**
+ *
+ * The PlannerDaemon is a long-running server that solves Coffee Server
+ * problems. The domain is defined once for every grid, and the problems are received as
+ * JSON lines from the standard input or from a socket on the local host.
+ * The result of every problem is written as a JSON line to the same channel.
+ *
+ * A request has an id, the problem, as the text of a problem file or as its
+ * initial and goal states, and optionally a priority (0 by default), the
+ * ordering of the petitions (distance by default, or tour), a timeout in
+ * milliseconds and a maximum number of iterations:
+ *
+ * {"id":"r1","priority":5,"timeout":200,"initial":"Robot-location(o1);...","goal":"..."}
+ *
+ * A planner that reaches its timeout or its iterations is stopped, and the
+ * request is answered with that status and the plan found until then, so
+ * no problem keeps a worker busy for longer than its limits.
+ *
+ * Requests wait in a bounded queue until a worker takes them, the ones with
+ * higher priority first and, with the same priority, in order of arrival.
+ * When the queue is full, new requests are rejected right away.
+ *
+ * Repeated problems can be answered from a PlanCache, with the plan found
+ * the first time. A request with "stats" instead of a problem is answered
+ * with the hits, misses, evictions and rejected plans of the cache:
+ * 
+ * {"id":"s1","stats":"cache"}
+ *
+ * Its options are -port n (reads the standard input if not given),
+ * -workers n (1 by default), -capacity n (100 by default), -timeout ms,
+ * the timeout of the requests that do not give one (none by default),
+ * -cache n, the number of plans kept (none by default), -store file,
+ * the file where the cache keeps its plans between executions, and
+ * -symbols n, the number of new symbols every request can register.
+ *
+ * Every domain has its own SymbolTable, with the names of its predicates
+ * and operators, and every request a table on top of it with the names of
+ * its objects, which is forgotten once the request is answered. So the
+ * names read from the requests do not grow the memory of the daemon, and
+ * a request with too many names is answered with a "Too many symbols"
+ * error without affecting the others. At most MAX_DOMAINS domains are kept: the requests
+ * of other grids build their domain every time.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlannerDaemon {
+
+	/* Maximum number of domains kept */
+	public static final int MAX_DOMAINS = 64;
+
+	/* Domain of the problem for every grid and ordering, by its size */
+	private ConcurrentMap<String, Domain> domains;
+	private PriorityBlockingQueue<Request> queue;
+	private int capacity;
+	private long timeout;
+	private PlanCache cache;
+	private AtomicLong arrivals;
+	private int symbols;
+
+	/**
+	 * Creates a PlannerDaemon with the domain of the Coffee Server problem,
+	 * that keeps at most capacity requests waiting.
+	 */
+	public PlannerDaemon(int capacity) {
+		domains = new ConcurrentHashMap<>();
+		queue = new PriorityBlockingQueue<>();
+		this.capacity = capacity;
+		timeout = 0L;
+		arrivals = new AtomicLong();
+		symbols = SymbolTable.DEFAULT_CAPACITY;
+	}
+
+	/**
+	 * Starts a number of workers that solve the requests of the queue.
+	 * They do not keep the application running on their own.
+	 */
+	public void start(int workers) {
+		for (int i=0; i<workers; i++) {
+			Thread worker = new Thread(this::work, "planner-worker-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Takes requests from the queue and answers them, until interrupted.
+	 * Every request taken is answered, even if its planner fails with an
+	 * Error, so its channel does not wait for it forever.
+	 */
+	private void work() {
+		try {
+			while (true) {
+				Request request = queue.take();
+				String line = null;
+				try {
+					line = solve(request).toJson("id");
+				} catch (Throwable e) {
+					line = new BatchResult(request.id, "Planner failed: " + e).toJson("id");
+				} finally {
+					request.channel.answered(line);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Reads a JSON line with a request and queues it, or answers it right away
+	 * if it is malformed or the queue is full.
+	 */
+	private void submit(String line, Channel channel) {
+		PrintStream out = channel.out;
+		Map<String, String> values;
+		try {
+			values = JsonLine.parse(line);
+		} catch (IllegalArgumentException e) {
+			answer(out, null, "error", "Malformed request: " + e.getMessage());
+			return;
+		}
+		if (values.get("stats") != null) {
+			write(out, "{\"id\":" + BatchResult.json(values.get("id")) + ",\"status\":\"stats\",\"cache\":"
+					+ ((cache == null) ? "null" : cache.toJson()) + "}");
+			return;
+		}
+		
+		Request request;
+		try {
+			String priority = values.get("priority");
+			request = new Request(values.get("id"),
+					(priority == null) ? 0 : Integer.parseInt(priority),
+					arrivals.getAndIncrement(), problemText(values), channel);
+			String ordering = values.get("ordering");
+			if (ordering != null) {
+				request.ordering = StandardHeuristics.Ordering.valueOf(ordering.toUpperCase());
+			}
+			String timeout = values.get("timeout");
+			request.timeout = (timeout == null) ? this.timeout : Long.parseLong(timeout);
+			String maxIterations = values.get("maxIterations");
+			if (maxIterations != null) {
+				request.maxIterations = Integer.parseInt(maxIterations);
+			}
+		} catch (IllegalArgumentException e) {
+			answer(out, values.get("id"), "error", "Malformed request: " + e.getMessage());
+			return;
+		}
+
+		/* Admission control: the request is rejected if the queue is full */
+		synchronized (this) {
+			if (queue.size() >= capacity) {
+				answer(out, request.id, "rejected", "Queue full");
+				return;
+			}
+			channel.accepted();
+			queue.add(request);
+		}
+	}
+
+	/**
+	 * Returns the text of the problem of a request, given as a problem file
+	 * or by its initial and goal states.
+	 */
+	private String problemText(Map<String, String> values) {
+		if (values.get("problem") != null) {
+			return values.get("problem");
+		} else if (values.get("initial") != null && values.get("goal") != null) {
+			return "InitialState=" + values.get("initial") + "\n\nFinalState=" + values.get("goal");
+		} else throw new IllegalArgumentException("No problem given");
+	}
+
+	/**
+	 * Returns the domain of a grid and ordering, creating it if it is not kept.
+	 */
+	private Domain domain(String name, Grid grid, StandardHeuristics.Ordering ordering) {
+		Domain domain = domains.get(name);
+		if (domain == null) {
+			domain = new Domain(grid, ordering);
+			if (domains.size() < MAX_DOMAINS) {
+				Domain previous = domains.putIfAbsent(name, domain);
+				if (previous != null) domain = previous;
+			}
+		}
+		return domain;
+	}
+
+	/**
+	 * Solves the problem of a request with a new planner of the domain, with
+	 * the symbols of the request in a table of its own.
+	 */
+	private BatchResult solve(Request request) {
+		SymbolTable previous = null;
+		try {
+			Grid grid = ProblemReader.readGrid(request.problem);
+			String name = grid + " " + request.ordering;
+			Domain domain = domain(name, grid, request.ordering);
+			previous = SymbolTable.use(new SymbolTable(domain.symbols, symbols));
+
+			ProblemReader reader = new ProblemReader(new StringReader(request.problem));
+			reader.readStates();
+			LinearPlannerBuilder builder = new LinearPlannerBuilder(domain.builder);
+			builder.setInitialState(reader.getInitialState());
+			builder.setFinalState(reader.getGoalState());
+			builder.setTraceLevel(TraceLevel.OFF);
+
+			LinearPlanner planner = builder.build();
+			PlanResult result = (cache == null) 
+					? planner.executePlan(request.timeout, request.maxIterations, null)
+					: cache.executePlan(name, planner, request.timeout, request.maxIterations, null);
+			return new BatchResult(request.id, planner, result);
+		} catch (IOException e1) {
+			return new BatchResult(request.id, "Could not read the problem");
+		} catch (PlannerBuilderException e2) {
+			return new BatchResult(request.id, "LinearPlanner was not properly created");
+		} catch (SymbolTableFullException e3) {
+			return new BatchResult(request.id, "Too many symbols: " + e3.getMessage());
+		} catch (RuntimeException e4) {
+			/* A malformed problem must not stop the worker */
+			return new BatchResult(request.id, "Malformed problem: " + e4);
+		} finally {
+			if (previous != null) {
+				SymbolTable.use(previous);
+			}
+		}
+	}
+
+	/**
+	 * Answers a request that is not solved, with the reason.
+	 */
+	private static void answer(PrintStream out, String id, String status, String error) {
+		write(out, "{\"id\":" + BatchResult.json(id) + ",\"status\":" + BatchResult.json(status)
+				+ ",\"error\":" + BatchResult.json(error) + "}");
+	}
+	
+	/**
+	 * Writes a line on an output shared by several threads.
+	 */
+	private static void write(PrintStream out, String line) {
+		synchronized (out) {
+			out.println(line);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Reads requests from an input, one per line, answering them on an output.
+	 * Once the input ends, it waits until all its requests have been answered.
+	 */
+	public void serve(InputStream in, OutputStream output) throws IOException, InterruptedException {
+		Channel channel = new Channel(new PrintStream(output, false, "UTF-8"));
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (!line.trim().isEmpty()) {
+				submit(line, channel);
+			}
+		}
+		channel.awaitIdle();
+	}
+
+	/**
+	 * Accepts connections on a port of the local host, serving each one
+	 * in its own thread.
+	 */
+	private void listen(int port) throws IOException {
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			while (true) {
+				Socket socket = server.accept();
+				Thread connection = new Thread(() -> {
+					try (Socket s = socket) {
+						serve(s.getInputStream(), s.getOutputStream());
+					} catch (IOException e1) {
+						/* The client closed the connection */
+					} catch (InterruptedException e2) {
+						Thread.currentThread().interrupt();
+					}
+				}, "planner-connection");
+				connection.setDaemon(true);
+				connection.start();
+			}
+		}
+	}
+
+
+	/* Getters and setters */
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Sets the timeout, in milliseconds, of the requests that do not
+	 * give one. With 0, they have no timeout.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+	
+	public PlanCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Sets the cache of the plans found, or null to solve every request.
+	 */
+	public void setCache(PlanCache cache) {
+		this.cache = cache;
+	}
+	
+	public int getSymbols() {
+		return symbols;
+	}
+	
+	/**
+	 * Sets the number of new symbols that every request can register.
+	 */
+	public void setSymbols(int symbols) {
+		this.symbols = symbols;
+	}
+
+	public static void main(String[] args) {
+		int port = -1;
+		int workers = 1;
+		int capacity = 100;
+		long timeout = 0L;
+		int cacheSize = 0;
+		String store = null;
+		int symbols = SymbolTable.DEFAULT_CAPACITY;
+		try {
+			for (int i=0; i<args.length; i++) {
+				if (args[i].equals("-port")) {
+					port = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-workers")) {
+					workers = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-capacity")) {
+					capacity = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-timeout")) {
+					timeout = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-cache")) {
+					cacheSize = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-store")) {
+					store = args[++i];
+				} else if (args[i].equals("-symbols")) {
+					symbols = Integer.parseInt(args[++i]);
+				} else throw new IllegalArgumentException();
+			}
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.out.println("Error: Wrong options.");
+			System.exit(1);
+		}
+
+		PlannerDaemon daemon = new PlannerDaemon(capacity);
+		daemon.setTimeout(timeout);
+		daemon.setSymbols(symbols);
+		try {
+			if (cacheSize > 0) {
+				daemon.setCache((store == null) ? new PlanCache(cacheSize) 
+						: new PlanCache(cacheSize, new File(store)));
+			}
+		} catch (IOException e) {
+			System.out.println("Error: Could not read the plan store.");
+			System.exit(1);
+		}
+		daemon.start(workers);
+		try {
+			if (port >= 0) {
+				daemon.listen(port);
+			} else {
+				/* With the standard input, it ends once every request is answered */
+				daemon.serve(System.in, System.out);
+			}
+		} catch (IOException e1) {
+			System.out.println("Error: Could not read/write.");
+		} catch (InterruptedException e2) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * The domain of the problems of a grid, with the SymbolTable of its
+	 * names, on top of which the requests of the domain register theirs.
+	 */
+	private static class Domain {
+
+		private LinearPlannerBuilder builder;
+		private SymbolTable symbols;
+
+		private Domain(Grid grid, StandardHeuristics.Ordering ordering) {
+			symbols = new SymbolTable();
+			SymbolTable previous = SymbolTable.use(symbols);
+			try {
+				builder = CoffeeServer.createBuilder(grid, ordering);
+			} finally {
+				SymbolTable.use(previous);
+			}
+		}
+
+	}
+
+
+	/**
+	 * A problem waiting in the queue, with the output where it is answered.
+	 */
+	private static class Request implements Comparable<Request> {
+
+		private String id;
+		private int priority;
+		private long arrival;
+		private String problem;
+		private Channel channel;
+		private StandardHeuristics.Ordering ordering;
+		private long timeout;
+		private int maxIterations;
+
+		private Request(String id, int priority, long arrival, String problem, Channel channel) {
+			this.id = id;
+			this.priority = priority;
+			this.arrival = arrival;
+			this.problem = problem;
+			this.channel = channel;
+			ordering = StandardHeuristics.Ordering.DISTANCE;
+		}
+
+		/**
+		 * Higher priorities go first, and then earlier arrivals.
+		 */
+		@Override
+		public int compareTo(Request other) {
+			if (priority != other.priority) {
+				return Integer.compare(other.priority, priority);
+			}
+			return Long.compare(arrival, other.arrival);
+		}
+
+	}
+
+
+	/**
+	 * An output where requests are answered, with the number of its
+	 * requests accepted that have not been answered yet.
+	 */
+	private static class Channel {
+
+		private PrintStream out;
+		private int pending;
+
+		private Channel(PrintStream out) {
+			this.out = out;
+			pending = 0;
+		}
+
+		private synchronized void accepted() {
+			pending++;
+		}
+
+		/**
+		 * Writes the answer of a request, if there is one, and counts it
+		 * as answered even if the output fails.
+		 */
+		private synchronized void answered(String line) {
+			try {
+				if (line != null) {
+					write(out, line);
+				}
+			} finally {
+				pending--;
+				notifyAll();
+			}
+		}
+
+		private synchronized void awaitIdle() throws InterruptedException {
+			while (pending > 0) {
+				wait();
+			}
+		}
+
+	}
+
+}
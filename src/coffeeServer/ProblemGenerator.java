@@ -0,0 +1,256 @@
+package coffeeServer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * The ProblemGenerator creates Coffee Server problems of any size, for
+ * stress testing the planner. A problem is given by the size of its grid,
+ * the number of machines, the number of coffee sizes, the number of
+ * petitions and a random seed, so the same options always give the same
+ * problem.
+ *
+ * Every size has at least one machine if there are enough machines, and
+ * petitions only ask for sizes that some machine makes. Machines and
+ * petitions are in different positions, with at most one petition in
+ * each one. The layout decides where they are placed:
+ *
+ * RANDOM places everything anywhere in the grid. FAR puts the machines in
+ * one corner and the petitions as far as possible from them. MISMATCHED
+ * spreads the machines, and every petition asks for the size of the
+ * farthest machine from it.
+ *
+ * The problem is written with the syntax read by the ProblemReader, with
+ * the size of its grid, to a file or to a reader in memory.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class ProblemGenerator {
+
+	public enum Layout {
+		RANDOM, FAR, MISMATCHED
+	}
+
+	/* Predicates written in each line of the problem */
+	private static final int LINE = 8;
+
+	private int width;
+	private int height;
+	private int machines;
+	private int sizes;
+	private int petitions;
+	private long seed;
+	private Layout layout;
+
+	/**
+	 * Creates a ProblemGenerator for a grid of width x height positions, with
+	 * some machines, coffee sizes and petitions, and a random seed. The layout
+	 * is RANDOM unless told otherwise.
+	 */
+	public ProblemGenerator(int width, int height, int machines, int sizes,
+			int petitions, long seed) {
+		if (width < 1 || height < 1 || machines < 1 || sizes < 1 || petitions < 0) {
+			throw new IllegalArgumentException("Wrong size of the problem");
+		}
+		if (machines + petitions > width * height) {
+			throw new IllegalArgumentException("The grid has only " + width * height + " positions");
+		}
+		this.width = width;
+		this.height = height;
+		this.machines = machines;
+		this.sizes = sizes;
+		this.petitions = petitions;
+		this.seed = seed;
+		layout = Layout.RANDOM;
+	}
+
+	/**
+	 * Generates the problem with the syntax of the problem files.
+	 */
+	public String generate() {
+		Random random = new Random(seed);
+		List<Integer> cells = new ArrayList<>();
+		for (int i=0; i<width * height; i++) {
+			cells.add(i);
+		}
+		Collections.shuffle(cells, random);
+
+		/* Orders the positions by where the layout wants machines first */
+		if (layout == Layout.FAR) {
+			cells.sort(Comparator.comparingInt(c -> x(c) + y(c)));
+		} else if (layout == Layout.MISMATCHED) {
+			spread(cells);
+		}
+		List<Integer> machineCells = new ArrayList<>(cells.subList(0, machines));
+		List<Integer> free = new ArrayList<>(cells.subList(machines, cells.size()));
+		if (layout == Layout.FAR) {
+			Collections.reverse(free);
+		}
+		List<Integer> petitionCells = free.subList(0, petitions);
+
+		/* Machines of every size, and then of random sizes */
+		int[] machineSizes = new int[machines];
+		for (int i=0; i<machines; i++) {
+			machineSizes[i] = (i < sizes) ? i+1 : random.nextInt(sizes) + 1;
+		}
+
+		StringBuilder initial = new StringBuilder("Grid=" + width + "x" + height + "\n");
+		initial.append("InitialState=Robot-free;");
+		initial.append("Robot-location(").append(Grid.location(random.nextInt(width * height)))
+				.append(");\n");
+		List<String> preds = new ArrayList<>();
+		for (int i=0; i<machines; i++) {
+			preds.add("Machine(" + Grid.location(machineCells.get(i)) + "," + machineSizes[i] + ")");
+		}
+		append(initial, preds);
+
+		preds.clear();
+		List<String> goals = new ArrayList<>();
+		for (int cell : petitionCells) {
+			int size = (layout == Layout.MISMATCHED)
+					? machineSizes[farthest(cell, machineCells)]
+					: machineSizes[random.nextInt(machines)];
+			preds.add("Petition(" + Grid.location(cell) + "," + size + ")");
+			goals.add("Served(" + Grid.location(cell) + ")");
+		}
+		preds.add("Steps(0)");
+		append(initial, preds);
+
+		StringBuilder goal = new StringBuilder("GoalState=");
+		goal.append("Robot-location(").append(Grid.location(random.nextInt(width * height)))
+				.append(");\n");
+		append(goal, goals);
+
+		return initial.append('\n').append(goal).toString();
+	}
+
+	/**
+	 * Generates the problem and returns a reader for it, as if it had
+	 * been read from a file.
+	 */
+	public ProblemReader generateReader() {
+		return new ProblemReader(new StringReader(generate()));
+	}
+
+	/**
+	 * Generates the problem and writes it to a file.
+	 */
+	public void write(String path) throws IOException {
+		try (PrintStream out = new PrintStream(path)) {
+			out.print(generate());
+		}
+	}
+
+	/**
+	 * Appends some predicates, LINE of them per line.
+	 */
+	private static void append(StringBuilder s, List<String> preds) {
+		for (int i=0; i<preds.size(); i++) {
+			s.append(preds.get(i)).append(';');
+			if (i % LINE == LINE-1 || i == preds.size()-1) {
+				s.append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Moves to the front of the positions the ones that are farthest
+	 * from each other, for placing the machines there.
+	 */
+	private void spread(List<Integer> cells) {
+		/* Distance from every position to the nearest machine placed */
+		int[] nearest = new int[cells.size()];
+		Arrays.fill(nearest, Integer.MAX_VALUE);
+		for (int i=1; i<machines; i++) {
+			int best = i;
+			for (int j=i; j<cells.size(); j++) {
+				nearest[j] = Math.min(nearest[j], distance(cells.get(j), cells.get(i-1)));
+				if (nearest[j] > nearest[best]) {
+					best = j;
+				}
+			}
+			Collections.swap(cells, i, best);
+			int swapped = nearest[i];
+			nearest[i] = nearest[best];
+			nearest[best] = swapped;
+		}
+	}
+
+	/**
+	 * Returns the index of the machine farthest from a position.
+	 */
+	private int farthest(int cell, List<Integer> machineCells) {
+		int farthest = 0;
+		for (int i=1; i<machineCells.size(); i++) {
+			if (distance(cell, machineCells.get(i)) > distance(cell, machineCells.get(farthest))) {
+				farthest = i;
+			}
+		}
+		return farthest;
+	}
+
+	private int distance(int a, int b) {
+		return Math.abs(x(a) - x(b)) + Math.abs(y(a) - y(b));
+	}
+
+	private int x(int cell) {
+		return cell % width;
+	}
+
+	private int y(int cell) {
+		return cell / width;
+	}
+
+
+	/* Getters and setters */
+
+	public Layout getLayout() {
+		return layout;
+	}
+
+	public void setLayout(Layout layout) {
+		this.layout = layout;
+	}
+
+	/**
+	 * Generates a problem file. Its arguments are the width and height of
+	 * the grid, the number of machines, sizes and petitions, the seed, and
+	 * optionally the layout and the file (the standard output by default).
+	 */
+	public static void main(String[] args) {
+		if (args.length < 6) {
+			System.out.println("Error: Please indicate width, height, machines, sizes, "
+					+ "petitions and seed.");
+			System.exit(1);
+		}
+
+		try {
+			ProblemGenerator generator = new ProblemGenerator(Integer.parseInt(args[0]),
+					Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+					Integer.parseInt(args[4]), Long.parseLong(args[5]));
+			if (args.length > 6) {
+				generator.setLayout(Layout.valueOf(args[6].toUpperCase()));
+			}
+
+			if (args.length > 7) {
+				generator.write(args[7]);
+			} else {
+				System.out.print(generator.generate());
+			}
+		} catch (IllegalArgumentException e1) {
+			System.out.println("Error: " + e1.getMessage());
+		} catch (IOException e2) {
+			System.out.println("Error: Could not write the problem.");
+		}
+	}
+
+}
@@ -3,8 +3,12 @@ package coffeeServer;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import strips.Parameter;
 import strips.Predicate;
@@ -15,84 +19,164 @@ import strips.State;
  * The ProblemReader is able to read a CoffeeServer problem.
  * It reads a text file with the following syntax:
  * 
+ * Grid=6x6
  * InitialState=Predicate1(p1,p2);Predicate2(p1);...
  * 
  * FinalState=Predicate1(p1);Predicate2(p2);
  * Predicate3(p3);
  * 
  * And is able to return an initial and final state containing
- * the specified information.
+ * the specified information. The first line, with the width and height
+ * of the grid, is optional: the grid is 6x6 if it is not given.
+ * 
+ * Steps(x) is not a predicate but the value of the Steps fluent.
  * 
  * @author Javier Beltran, Jorge Rodriguez
  *
  */
 public class ProblemReader {
 	
+	/* Names read as numeric fluents instead of predicates */
+	private static final List<String> FLUENTS = Arrays.asList("Steps");
+	
 	private BufferedReader file;
 	private State initialState, goalState;
+	private Grid grid;
 	
 	public ProblemReader(String path) throws IOException {
 		file = new BufferedReader(new FileReader(path));
 		initialState = null;
 		goalState = null;
+		grid = Grid.getDefault();
+	}
+	
+	/**
+	 * Creates a ProblemReader that reads the problem from a reader,
+	 * like a StringReader with the text of the problem.
+	 */
+	public ProblemReader(Reader reader) {
+		file = new BufferedReader(reader);
+		initialState = null;
+		goalState = null;
+		grid = Grid.getDefault();
 	}
 	
 	/**
 	 * Reads the file and creates the initial and final states.
+	 * The file is closed afterwards.
 	 */
 	public void readStates() throws IOException {
-		/* Reads the initial state part */
-		String initialText = "";
+		try {
+			readText();
+		} finally {
+			file.close();
+		}
+	}
+	
+	/**
+	 * Returns the grid of the text of a problem, without reading the rest
+	 * of it: the grid of its first line, or the default one.
+	 */
+	public static Grid readGrid(String text) {
+		int end = text.indexOf('\n');
+		String line = (end < 0) ? text : text.substring(0, end);
+		return line.startsWith("Grid=") ? Grid.parse(line.substring("Grid=".length())) 
+				: Grid.getDefault();
+	}
+	
+	private void readText() throws IOException {
+		/* Reads the size of the grid, if given, sharing the grid of that size */
 		String line = file.readLine();
+		if (line.startsWith("Grid=")) {
+			grid = Grid.parse(line.substring("Grid=".length()));
+			line = file.readLine();
+		}
+		
+		/* Reads the initial state part */
+		StringBuilder initialText = new StringBuilder();
 		while (!line.equals("")) {
-			initialText += line;
+			initialText.append(line);
 			line = file.readLine();
 		}
 		
 		/* Reads the final state part */
-		String goalText = "";
+		StringBuilder goalText = new StringBuilder();
 		while (line != null) {
-			goalText += line;
+			goalText.append(line);
 			line = file.readLine();
 		}
 		
 		/* Detects the list of predicates of both parts */
-		String[] initStrings = initialText.split("=")[1].split(";");
-		String[] goalStrings = goalText.split("=")[1].split(";");
+		String[] initStrings = initialText.toString().split("=")[1].split(";");
+		String[] goalStrings = goalText.toString().split("=")[1].split(";");
 		List<Predicate> initPredicates = new ArrayList<>();
 		List<Predicate> goalPredicates = new ArrayList<>();
 		
-		/* Adds the predicates for both states */
+		/* Adds the predicates for both states, and then their fluents */
+		Map<String, Long> initFluents = new LinkedHashMap<>();
+		Map<String, Long> goalFluents = new LinkedHashMap<>();
 		for (String predString : initStrings) {
-			initPredicates.add(createPredicate(predString));
+			addPredicate(predString, initPredicates, initFluents);
 		}
 		for (String predString : goalStrings) {
-			goalPredicates.add(createPredicate(predString));
+			addPredicate(predString, goalPredicates, goalFluents);
 		}
 		
 		initialState = new State(initPredicates);
 		goalState = new State(goalPredicates);
+		for (Map.Entry<String, Long> fluent : initFluents.entrySet()) {
+			initialState.setFluent(fluent.getKey(), fluent.getValue());
+		}
+		for (Map.Entry<String, Long> fluent : goalFluents.entrySet()) {
+			goalState.setFluent(fluent.getKey(), fluent.getValue());
+		}
+	}
+	
+	/**
+	 * Reads a predicate in its textual form and adds it to the predicates,
+	 * or to the fluents if it is the value of a fluent.
+	 */
+	private void addPredicate(String s, List<Predicate> predicates, Map<String, Long> fluents) {
+		Predicate pred = createPredicate(s);
+		if (FLUENTS.contains(pred.getName()) && pred.getParams().size() == 1) {
+			fluents.put(pred.getName(), Long.parseLong(pred.getParams().get(0).getValue()));
+		} else {
+			predicates.add(pred);
+		}
+	}
+	
+	/**
+	 * Reads a list of predicates separated by ";", like the ones of a
+	 * problem file, to be injected into a planner that is already running.
+	 */
+	public static List<Predicate> readPredicates(String text) {
+		List<Predicate> predicates = new ArrayList<>();
+		for (String predString : text.split(";")) {
+			if (!predString.trim().isEmpty()) {
+				predicates.add(createPredicate(predString));
+			}
+		}
+		return predicates;
 	}
 	
 	/**
 	 * Reads a predicate in its textual form and translates
 	 * it to a real predicate object.
 	 */
-	private Predicate createPredicate(String s) {
+	private static Predicate createPredicate(String s) {
 		/* Gets the name and parameters of the string */
 		s = s.trim().replace(")","");
 		String[] parts = s.split("\\(");
-		String name = parts[0];
+		String name = parts[0].trim();
 		if (parts.length > 1) {
 			String[] paramParts = parts[1].split(",");
 			List<Parameter> params = new ArrayList<>();
 			
-			/* Converts parameter text to parameter */
+			/* Converts parameter text to parameter, ignoring the spaces around it */
 			for (String paramString : paramParts) {
+				paramString = paramString.trim();
 				if (paramString.startsWith("o")) {
 					params.add(new Parameter("o", paramString));
-				} else if (name.equals("Steps")){
-					params.add(new Parameter("x", paramString));
 				} else {
 					params.add(new Parameter("n", paramString));
 				}
@@ -114,4 +198,11 @@ public class ProblemReader {
 		return goalState;
 	}
 	
+	/**
+	 * Returns the grid of the problem read.
+	 */
+	public Grid getGrid() {
+		return grid;
+	}
+	
 }
@@ -24,11 +24,51 @@ import strips.State;
  * The second one prevents loops by deciding a proper order of the preconditions
  * of any operator in the stack.
  * 
+ * The petitions are ordered by their distance to the final robot location,
+ * unless the TOUR ordering is chosen. Then they are ordered as a route that
+ * starts where the robot is and goes through a machine of the right size
+ * before every petition, found by a PetitionTour within a time budget.
+ * 
  * @author Javier Beltran, Jorge Rodriguez
  *
  */
 public class StandardHeuristics implements Intelligence {
 	
+	public enum Ordering {
+		DISTANCE, TOUR
+	}
+	
+	/* Time for improving the tour of the petitions, by default */
+	private static final long TIME_BUDGET = 50;
+	
+	private Grid grid;
+	private Ordering ordering;
+	private long timeBudget;
+	
+	/**
+	 * Creates the heuristics for the grid of the bundled problems.
+	 */
+	public StandardHeuristics() {
+		this(Grid.getDefault());
+	}
+	
+	/**
+	 * Creates the heuristics for the problems in a grid.
+	 */
+	public StandardHeuristics(Grid grid) {
+		this(grid, Ordering.DISTANCE);
+	}
+	
+	/**
+	 * Creates the heuristics for the problems in a grid, with an ordering
+	 * of the petitions.
+	 */
+	public StandardHeuristics(Grid grid, Ordering ordering) {
+		this.grid = grid;
+		this.ordering = ordering;
+		timeBudget = TIME_BUDGET;
+	}
+	
 	/**
 	 * Orders the Served predicates of the final state, so the petitions served first
 	 * are the ones that are farther from the final robot location, and the ones served
@@ -36,18 +76,21 @@ public class StandardHeuristics implements Intelligence {
 	 */
 	@Override
 	public List<Predicate> orderFinalState(State initialState, State finalState) {
+		if (ordering == Ordering.TOUR) {
+			return orderTour(initialState, finalState);
+		}
 		List<Predicate> l = new ArrayList<Predicate>();
-		Map<Predicate, Integer> distances = new HashMap<Predicate, Integer>();
-		for (int i=0; i<finalState.getPredicates().size(); i++) {
-			Predicate pred = finalState.getPredicates().get(i);
+		/* Petitions at the same distance keep the order of the final state */
+		Map<Predicate, Integer> distances = new LinkedHashMap<Predicate, Integer>();
+		for (Predicate pred : finalState.predicates()) {
 			if (pred.getName().equals("Robot-location")) {
 				/* Retrieves the final robot location */
 				l.add(pred);
 			} else {
 				/* Calculates the distance between the location and the petition */
-				int distance = Distance.manhattanDistance(
-						l.get(0).getParams().get(0).getValue(), 
-						pred.getParams().get(0).getValue());
+				int distance = grid.distance(
+						l.get(0).getParams().get(0).getValueId(), 
+						pred.getParams().get(0).getValueId());
 				distances.put(pred, distance);	
 			}	
 		}
@@ -58,6 +101,64 @@ public class StandardHeuristics implements Intelligence {
 		return l;
 	}
 	
+	/**
+	 * Orders the predicates of the final state as a tour of the petitions. The
+	 * final robot location goes first and the petition served first goes last,
+	 * as the last predicate of the list is the first one treated.
+	 * 
+	 * Every petition is served from the first machine of its size in the
+	 * initial state, which is the one the planner chooses.
+	 */
+	private List<Predicate> orderTour(State initialState, State finalState) {
+		int start = -1;
+		Map<Integer, String> sizes = new HashMap<Integer, String>();
+		Map<String, Integer> machines = new HashMap<String, Integer>();
+		for (Predicate pred : initialState.predicates()) {
+			if (pred.getName().equals("Robot-location")) {
+				start = grid.getCell(pred.getParams().get(0).getValueId());
+			} else if (pred.getName().equals("Petition")) {
+				sizes.put(pred.getParams().get(0).getValueId(), pred.getParams().get(1).getValue());
+			} else if (pred.getName().equals("Machine")) {
+				machines.putIfAbsent(pred.getParams().get(1).getValue(), 
+						grid.getCell(pred.getParams().get(0).getValueId()));
+			}
+		}
+		
+		List<Predicate> l = new ArrayList<Predicate>();
+		List<Predicate> petitions = new ArrayList<Predicate>();
+		int end = -1;
+		for (Predicate pred : finalState.predicates()) {
+			if (pred.getName().equals("Robot-location")) {
+				end = grid.getCell(pred.getParams().get(0).getValueId());
+				l.add(0, pred);
+			} else if (pred.getName().equals("Served") 
+					&& sizes.containsKey(pred.getParams().get(0).getValueId())) {
+				petitions.add(pred);
+			} else {
+				l.add(pred);
+			}
+		}
+		if (start < 0 || petitions.isEmpty()) {
+			l.addAll(petitions);
+			return l;
+		}
+		
+		/* Cells of the petitions and of the machines that serve them */
+		int[] petitionCells = new int[petitions.size()];
+		int[] machineCells = new int[petitions.size()];
+		for (int i=0; i<petitions.size(); i++) {
+			int o = petitions.get(i).getParams().get(0).getValueId();
+			petitionCells[i] = grid.getCell(o);
+			machineCells[i] = machines.getOrDefault(sizes.get(o), petitionCells[i]);
+		}
+		int[] tour = new PetitionTour(grid, start, end, petitionCells, machineCells)
+				.solve(timeBudget * 1000000L);
+		for (int i=tour.length-1; i>=0; i--) {
+			l.add(petitions.get(tour[i]));
+		}
+		return l;
+	}
+	
 	/**
 	 * Orders the preconditions of an operator in order to prevent
 	 * unwanted situations and be more efficient when treating a petition.
@@ -93,5 +194,27 @@ public class StandardHeuristics implements Intelligence {
 	                LinkedHashMap::new
 	              ));
 	}
+	
+	
+	/* Getters and setters */
+	
+	public Ordering getOrdering() {
+		return ordering;
+	}
+	
+	public void setOrdering(Ordering ordering) {
+		this.ordering = ordering;
+	}
+	
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+	
+	/**
+	 * Sets the time for improving the tour of the petitions, in milliseconds.
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
 
 }
@@ -0,0 +1,57 @@
+package strips;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 
+ * An AchieverIndex relates every predicate name of a problem with the
+ * operators that add a predicate with that name, that is, the operators
+ * that can achieve it. It is compiled once from the available operators,
+ * so the planner does not have to look through all of them every time
+ * it needs to achieve a predicate.
+ * 
+ * The achievers of a predicate are kept in the same order as the 
+ * available operators, which is their order of priority.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class AchieverIndex {
+	
+	/* Operators that add each predicate, by the identifier of its name */
+	private Map<Integer, List<Operator>> achievers;
+	
+	/**
+	 * Creates the index of a list of operators, given in order of priority.
+	 */
+	public AchieverIndex(List<Operator> operators) {
+		achievers = new HashMap<>();
+		for (Operator op : operators) {
+			for (Predicate add : op.getAdds()) {
+				List<Operator> ops = achievers.get(add.getNameId());
+				if (ops == null) {
+					ops = new ArrayList<>();
+					achievers.put(add.getNameId(), ops);
+				}
+				/* An operator may add several predicates with the same name */
+				if (!ops.contains(op)) {
+					ops.add(op);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the operators that add a predicate with the same name as pred,
+	 * or an empty list if there is none.
+	 */
+	public List<Operator> getAchievers(Predicate pred) {
+		List<Operator> ops = achievers.get(pred.getNameId());
+		return (ops == null) ? Collections.<Operator>emptyList() : ops;
+	}
+	
+}
@@ -0,0 +1,156 @@
+package strips;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 
+ * An AsyncTraceSink writes the log of the planner in a background thread.
+ * The planner only copies the identifiers of the symbols of the state and
+ * of the elements of the stack, in an IterationSnapshot, and leaves it in
+ * a bounded buffer. The writer thread builds their texts, lays them out
+ * and writes them in the output. If the buffer gets full, the planner
+ * waits for the writer, so the memory used stays limited.
+ * 
+ * The writer does not keep the application running, so whatever is left
+ * in the buffer is lost if the application ends without flushing or
+ * closing the sink. The LinearPlanner flushes it at the end of every
+ * execution and after writing the plan and the steps.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class AsyncTraceSink implements TraceSink {
+	
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	/* Marks the end of the log in the buffer */
+	private static final Object END = new Object();
+	
+	private TraceLevel level;
+	private PrintStream output;
+	private BlockingQueue<Object> buffer;
+	private Thread writer;
+	private volatile boolean closed;
+	
+	/**
+	 * Creates a sink that writes in an output the information of a level.
+	 */
+	public AsyncTraceSink(OutputStream output, TraceLevel level) {
+		this(output, level, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a sink like the previous constructor, with a buffer that
+	 * holds at most capacity iterations or lines.
+	 */
+	public AsyncTraceSink(OutputStream output, TraceLevel level, int capacity) {
+		this.level = level;
+		this.output = new PrintStream(new BufferedOutputStream(output, 1 << 16));
+		buffer = new ArrayBlockingQueue<>(capacity);
+		closed = false;
+		
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "trace-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	@Override
+	public TraceLevel getLevel() {
+		return level;
+	}
+	
+	/**
+	 * Copies the state and the stack, and leaves them for the writer.
+	 */
+	@Override
+	public void iteration(int iteration, State state, PlannerStack stack) {
+		put(new IterationSnapshot(iteration, state, stack));
+	}
+	
+	@Override
+	public void println(String line) {
+		put(line);
+	}
+	
+	/**
+	 * Waits until the writer has written everything left in the buffer,
+	 * unless the sink is closed, so everything has been written.
+	 */
+	@Override
+	public void flush() {
+		if (closed) {
+			return;
+		}
+		CountDownLatch written = new CountDownLatch(1);
+		put(written);
+		try {
+			written.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Waits for the writer to finish the log and closes the output.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			put(END);
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			output.close();
+		}
+	}
+	
+	/**
+	 * Leaves an entry in the buffer, waiting while it is full.
+	 */
+	private void put(Object entry) {
+		try {
+			buffer.put(entry);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Body of the writer thread: writes the entries of the buffer
+	 * until the end of the log is found.
+	 */
+	private void write() {
+		try {
+			Object entry = buffer.take();
+			while (entry != END) {
+				if (entry instanceof IterationSnapshot) {
+					IterationSnapshot it = (IterationSnapshot) entry;
+					TraceFormatter.printIteration(output, it.getNumber(), it.getState(), it.getStack());
+				} else if (entry instanceof CountDownLatch) {
+					output.flush();
+					((CountDownLatch) entry).countDown();
+				} else {
+					output.println(entry);
+				}
+				entry = buffer.take();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		output.flush();
+	}
+	
+}
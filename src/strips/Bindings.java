@@ -0,0 +1,151 @@
+package strips;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 
+ * The Bindings are the environment of variables used by the planner.
+ * Every uninstantiated parameter stacked in the PlannerStack is registered
+ * here, and refers from then on to the Variable for its name. All the
+ * parameters in the stack with the same uninstantiated value (like _o)
+ * refer to the same variable, so binding it instantiates all of them.
+ * 
+ * Once a variable is bound, its name is free again: parameters with
+ * that name registered later belong to a new variable.
+ * 
+ * Every change of the variables in use is notified to the listener, so
+ * a Trail can undo them together with the bindings and unions.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class Bindings {
+	
+	/* Unbound variables, by the identifier of their name */
+	private Map<Integer, Variable> active;
+	
+	/* Number of variables created, used as identifier of the next one */
+	private int created;
+	
+	private ChangeListener listener;
+	
+	/**
+	 * Creates an empty environment of variables.
+	 */
+	public Bindings() {
+		this(new ChangeListener() {});
+	}
+	
+	/**
+	 * Creates an empty environment of variables that notifies a listener
+	 * of the variables bound and unified.
+	 */
+	Bindings(ChangeListener listener) {
+		active = new HashMap<>();
+		created = 0;
+		this.listener = listener;
+	}
+	
+	/**
+	 * Makes an uninstantiated parameter refer to the variable of its
+	 * name, creating the variable if it is not in use.
+	 */
+	public void register(Parameter p) {
+		if (p.isInstantiated()) return;
+		
+		Variable var = active.get(p.getValueId());
+		if (p.getVariable() == null) {
+			if (var == null) {
+				var = new Variable(created++, p.getValue(), p.getValueId());
+				activate(p.getValueId(), var);
+			}
+			p.setVariable(var);
+		} else if (var == null) {
+			activate(p.getValueId(), p.getVariable().find());
+		} else {
+			/* Two variables with the same name in use are the same one */
+			Variable other = p.getVariable().find();
+			if (var != other) {
+				Variable root = var.union(other);
+				activate(p.getValueId(), root);
+				listener.unified(root, (root == var) ? other : var);
+			}
+		}
+	}
+	
+	/**
+	 * Binds the variable of an uninstantiated parameter to the value of
+	 * another one. All the parameters that refer to the variable get the
+	 * value, and the name of the variable can be used again.
+	 */
+	public void bind(Parameter variable, Parameter value) {
+		int nameId = variable.getValueId();
+		Variable var = variable.getVariable();
+		if (var == null) {
+			var = active.get(nameId);
+		}
+		if (var != null) {
+			var.bind(value);
+			listener.bound(var.find());
+		} else {
+			/* The parameter was never stacked, so it is instantiated on its own */
+			variable.copyValue(value);
+		}
+		activate(nameId, null);
+	}
+	
+	/**
+	 * Makes a variable, or none if it is null, the one in use for a name,
+	 * notifying the listener if it changes.
+	 */
+	private void activate(int nameId, Variable var) {
+		Variable previous = (var == null) ? active.remove(nameId) : active.put(nameId, var);
+		if (previous != var) {
+			listener.activated(nameId, previous);
+		}
+	}
+	
+	/**
+	 * Undoes a change of the variable in use for a name, making the
+	 * previous one, or none, be in use again.
+	 */
+	void restore(int nameId, Variable previous) {
+		if (previous == null) {
+			active.remove(nameId);
+		} else {
+			active.put(nameId, previous);
+		}
+	}
+	
+	/**
+	 * Undoes the binding of a variable, so it is unbound. The variable
+	 * in use for its name is restored on its own.
+	 */
+	void unbind(Variable var) {
+		Variable root = var.find();
+		root.unbind();
+		listener.unbound(root);
+	}
+	
+	/**
+	 * Undoes the union of two variables, being var the representative
+	 * of both.
+	 */
+	void separate(Variable var, Variable other) {
+		other.separate();
+		listener.separated(var, other);
+	}
+	
+	
+	/* Getters and setters */
+	
+	/**
+	 * Returns the variables in use, by the identifier of their name.
+	 */
+	Map<Integer, Variable> getActive() {
+		return Collections.unmodifiableMap(active);
+	}
+	
+}
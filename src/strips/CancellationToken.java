@@ -0,0 +1,33 @@
+package strips;
+
+/**
+ *
+ * A CancellationToken lets another thread stop a LinearPlanner that is
+ * executing a plan. The planner checks it once per iteration, so cancelling
+ * takes effect at the next iteration, and the planner returns what it had
+ * found so far. A token can be shared by several planners, which are all
+ * cancelled at the same time.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class CancellationToken {
+
+	private volatile boolean cancelled;
+
+	public CancellationToken() {
+		cancelled = false;
+	}
+
+	/**
+	 * Asks the planners using this token to stop.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+}
@@ -0,0 +1,73 @@
+package strips;
+
+/**
+ * 
+ * A ChangeListener is notified of every change done by the planner to
+ * its current state (its predicates and fluents), its stack and the bindings
+ * of the variables in the stack. The notifications are given after the change has been done.
+ * 
+ * All the methods do nothing by default, so a listener only has to
+ * implement the changes it is interested in.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public interface ChangeListener {
+	
+	/**
+	 * A predicate has been added to the state.
+	 */
+	public default void added(Predicate pred) {}
+	
+	/**
+	 * A predicate has been removed from the state.
+	 */
+	public default void removed(Predicate pred) {}
+	
+	/**
+	 * A fluent of the state, given by the identifier of its name, has
+	 * changed its value. A fluent without value had the value 0.
+	 */
+	public default void changed(int fluent, long oldValue, long newValue) {}
+	
+	/**
+	 * An element has been stacked. Its uninstantiated parameters are
+	 * already registered in the bindings.
+	 */
+	public default void pushed(Stackable elem) {}
+	
+	/**
+	 * The element at the top of the stack has been unstacked.
+	 */
+	public default void popped(Stackable elem) {}
+	
+	/**
+	 * A variable, which was unbound, has been bound to a value.
+	 */
+	public default void bound(Variable var) {}
+	
+	/**
+	 * The groups of two variables have been joined, and var is
+	 * now the representative of both.
+	 */
+	public default void unified(Variable var, Variable other) {}
+	
+	/**
+	 * The variable in use for a name, given by its identifier, has changed.
+	 * The previous one, or null if there was none, has been replaced by
+	 * another one or by null.
+	 */
+	public default void activated(int nameId, Variable previous) {}
+	
+	/**
+	 * A variable, which was bound, is unbound again.
+	 */
+	public default void unbound(Variable var) {}
+	
+	/**
+	 * Two variables that were unified, being var the representative of
+	 * both, have been separated again.
+	 */
+	public default void separated(Variable var, Variable other) {}
+	
+}
@@ -0,0 +1,90 @@
+package strips;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * The ChangeListeners are the listeners registered in a State or in a 
+ * PlannerStack. Every change is passed on to all of them, in the order
+ * they were registered. When there are no listeners, notifying a change
+ * costs nothing more than checking an empty array.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+class ChangeListeners implements ChangeListener {
+	
+	private ChangeListener[] listeners;
+	
+	ChangeListeners() {
+		listeners = new ChangeListener[0];
+	}
+	
+	void add(ChangeListener listener) {
+		listeners = Arrays.copyOf(listeners, listeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+	}
+	
+	void remove(ChangeListener listener) {
+		for (int i=0; i<listeners.length; i++) {
+			if (listeners[i] == listener) {
+				ChangeListener[] remaining = new ChangeListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, remaining, 0, i);
+				System.arraycopy(listeners, i+1, remaining, i, listeners.length - i - 1);
+				listeners = remaining;
+				return;
+			}
+		}
+	}
+	
+	@Override
+	public void added(Predicate pred) {
+		for (ChangeListener l : listeners) l.added(pred);
+	}
+	
+	@Override
+	public void removed(Predicate pred) {
+		for (ChangeListener l : listeners) l.removed(pred);
+	}
+	
+	@Override
+	public void changed(int fluent, long oldValue, long newValue) {
+		for (ChangeListener l : listeners) l.changed(fluent, oldValue, newValue);
+	}
+	
+	@Override
+	public void pushed(Stackable elem) {
+		for (ChangeListener l : listeners) l.pushed(elem);
+	}
+	
+	@Override
+	public void popped(Stackable elem) {
+		for (ChangeListener l : listeners) l.popped(elem);
+	}
+	
+	@Override
+	public void bound(Variable var) {
+		for (ChangeListener l : listeners) l.bound(var);
+	}
+	
+	@Override
+	public void unified(Variable var, Variable other) {
+		for (ChangeListener l : listeners) l.unified(var, other);
+	}
+	
+	@Override
+	public void activated(int nameId, Variable previous) {
+		for (ChangeListener l : listeners) l.activated(nameId, previous);
+	}
+	
+	@Override
+	public void unbound(Variable var) {
+		for (ChangeListener l : listeners) l.unbound(var);
+	}
+	
+	@Override
+	public void separated(Variable var, Variable other) {
+		for (ChangeListener l : listeners) l.separated(var, other);
+	}
+	
+}
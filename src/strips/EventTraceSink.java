@@ -0,0 +1,310 @@
+package strips;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 
+ * An EventTraceSink writes the log of the planner as a compact binary
+ * stream of events, instead of writing the whole state and stack at every
+ * iteration. It records the changes of the state and the stack: predicates
+ * added and removed, fluents changed, elements pushed and popped, and
+ * variables bound. The
+ * TraceReplayer rebuilds the text of the full log from these events.
+ * 
+ * Symbols and variables are written by their identifiers. The text of a
+ * symbol, or the name of a variable, is written only the first time it
+ * appears in the stream.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class EventTraceSink implements TraceSink, ChangeListener {
+	
+	/* Kinds of events */
+	static final int SYMBOL = 0;
+	static final int VARIABLE = 1;
+	static final int ITERATION = 2;
+	static final int PUSH = 3;
+	static final int POP = 4;
+	static final int BIND = 5;
+	static final int UNIFY = 6;
+	static final int ADD = 7;
+	static final int REMOVE = 8;
+	static final int TEXT = 9;
+	static final int UNBIND = 10;
+	static final int SEPARATE = 11;
+	static final int FLUENT = 12;
+	
+	/* Kinds of stacked elements */
+	static final int PREDICATE = 0;
+	static final int OPERATOR = 1;
+	static final int SET = 2;
+	
+	private DataOutputStream output;
+	private SymbolTable symbols;
+	private BitSet writtenSymbols;
+	private BitSet writtenVariables;
+	private boolean failed;
+
+	/**
+	 * Creates a sink that writes the events in an output. The symbols are
+	 * read from the current SymbolTable of the thread creating it.
+	 */
+	public EventTraceSink(OutputStream output) {
+		this.output = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+		symbols = SymbolTable.current();
+		writtenSymbols = new BitSet();
+		writtenVariables = new BitSet();
+		failed = false;
+	}
+	
+	/**
+	 * The events allow to rebuild the whole log, so the level is FULL.
+	 */
+	@Override
+	public TraceLevel getLevel() {
+		return TraceLevel.FULL;
+	}
+	
+	/**
+	 * Writes the initial state and stack, and starts listening to their changes.
+	 */
+	@Override
+	public void attach(State state, PlannerStack stack) {
+		for (Predicate pred : state.predicates()) {
+			added(pred);
+		}
+		for (Map.Entry<String, Long> fluent : state.getFluents().entrySet()) {
+			changed(symbols.intern(fluent.getKey()), 0L, fluent.getValue());
+		}
+		for (Stackable elem : stack.getStack()) {
+			pushed(elem);
+		}
+		state.addListener(this);
+		stack.addListener(this);
+	}
+	
+	@Override
+	public void iteration(int iteration, State state, PlannerStack stack) {
+		try {
+			writeInt(ITERATION);
+			writeInt(iteration);
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void println(String line) {
+		try {
+			writeInt(TEXT);
+			output.writeUTF(line);
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void added(Predicate pred) {
+		writeElement(ADD, pred);
+	}
+	
+	@Override
+	public void removed(Predicate pred) {
+		writeElement(REMOVE, pred);
+	}
+	
+	@Override
+	public void changed(int fluent, long oldValue, long newValue) {
+		try {
+			declareSymbol(fluent);
+			writeInt(FLUENT);
+			writeInt(fluent);
+			output.writeLong(newValue);
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void pushed(Stackable elem) {
+		writeElement(PUSH, elem);
+	}
+	
+	@Override
+	public void popped(Stackable elem) {
+		try {
+			writeInt(POP);
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void bound(Variable var) {
+		try {
+			declareSymbol(var.getValueId());
+			writeInt(BIND);
+			writeInt(var.getId());
+			writeInt(var.getValueId());
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void unified(Variable var, Variable other) {
+		try {
+			writeInt(UNIFY);
+			writeInt(var.getId());
+			writeInt(other.getId());
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void unbound(Variable var) {
+		try {
+			writeInt(UNBIND);
+			writeInt(var.getId());
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void separated(Variable var, Variable other) {
+		try {
+			writeInt(SEPARATE);
+			writeInt(other.getId());
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void flush() {
+		try {
+			output.flush();
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void close() {
+		try {
+			output.close();
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	/**
+	 * Checks whether any event could not be written.
+	 */
+	public boolean hasFailed() {
+		return failed;
+	}
+	
+	/**
+	 * Writes an event about an element, after declaring the symbols
+	 * and variables it uses.
+	 */
+	private void writeElement(int event, Stackable elem) {
+		try {
+			declare(elem);
+			writeInt(event);
+			write(elem);
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+	
+	/**
+	 * Writes a stacked element: its kind, and its name and parameters, or
+	 * the predicates of the set.
+	 */
+	private void write(Stackable elem) throws IOException {
+		if (elem instanceof PredicateSet) {
+			Collection<Predicate> preds = ((PredicateSet) elem).predicates();
+			writeInt(SET);
+			writeInt(preds.size());
+			for (Predicate pred : preds) {
+				write(pred);
+			}
+		} else {
+			SingleStackable single = (SingleStackable) elem;
+			writeInt((elem instanceof Operator) ? OPERATOR : PREDICATE);
+			writeInt(single.getNameId());
+			writeInt(single.getParams().size());
+			for (Parameter p : single.getParams()) {
+				/* The lowest bit tells variables from symbols */
+				Variable var = p.getVariable();
+				if (var != null && !var.isBound()) {
+					writeInt(var.getId() << 1 | 1);
+				} else {
+					writeInt(p.getValueId() << 1);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Writes the symbols and variables used by an element that have
+	 * not been written yet.
+	 */
+	private void declare(Stackable elem) throws IOException {
+		if (elem instanceof PredicateSet) {
+			for (Predicate pred : ((PredicateSet) elem).predicates()) {
+				declare(pred);
+			}
+		} else {
+			SingleStackable single = (SingleStackable) elem;
+			declareSymbol(single.getNameId());
+			for (Parameter p : single.getParams()) {
+				Variable var = p.getVariable();
+				if (var != null && !var.isBound()) {
+					if (!writtenVariables.get(var.getId())) {
+						declareSymbol(var.getNameId());
+						writeInt(VARIABLE);
+						writeInt(var.getId());
+						writeInt(var.getNameId());
+						writtenVariables.set(var.getId());
+					}
+				} else {
+					declareSymbol(p.getValueId());
+				}
+			}
+		}
+	}
+	
+	private void declareSymbol(int id) throws IOException {
+		if (!writtenSymbols.get(id)) {
+			writeInt(SYMBOL);
+			writeInt(id);
+			output.writeUTF(symbols.symbol(id));
+			writtenSymbols.set(id);
+		}
+	}
+	
+	/**
+	 * Writes a non-negative integer in as few bytes as possible, seven
+	 * bits per byte, with the highest bit set if more bytes follow.
+	 */
+	private void writeInt(int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			output.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+	
+}
@@ -0,0 +1,126 @@
+package strips;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * A GroundAction is an operator with all its parameters instantiated,
+ * obtained when grounding a problem. Besides the operator, it keeps the
+ * identifiers of the facts in its preconditions, adds and deletes tables,
+ * as numbered by the GroundProblem it belongs to. Only those identifiers
+ * are kept, so an action takes the size of its tables whatever the number
+ * of facts of the problem.
+ * 
+ * For the GroundState, the tables are also kept as masks of the words of
+ * a bitset over the facts, but only for the words that have some fact of
+ * the action, so they do not grow with the problem either.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class GroundAction {
+	
+	private int id;
+	private Operator operator;
+	private int[] preconditions;
+	private int[] adds;
+	private int[] deletes;
+	
+	/* Words of the bitset with some fact of the tables, and the masks of each table in them */
+	private int[] words;
+	private long[] preconditionMasks;
+	private long[] addMasks;
+	private long[] deleteMasks;
+	
+	/**
+	 * Creates a GroundAction given its identifier, its operator and the
+	 * facts of its tables.
+	 */
+	public GroundAction(int id, Operator operator, int[] preconditions, 
+			int[] adds, int[] deletes) {
+		this.id = id;
+		this.operator = operator;
+		this.preconditions = preconditions;
+		this.adds = adds;
+		this.deletes = deletes;
+		
+		/* The words touched by the tables, in order and without repetitions */
+		int[] all = new int[preconditions.length + adds.length + deletes.length];
+		int n = 0;
+		for (int[] table : new int[][] { preconditions, adds, deletes }) {
+			for (int fact : table) {
+				all[n++] = fact >>> 6;
+			}
+		}
+		Arrays.sort(all);
+		n = 0;
+		for (int i=0; i<all.length; i++) {
+			if (i == 0 || all[i] != all[i-1]) {
+				all[n++] = all[i];
+			}
+		}
+		words = Arrays.copyOf(all, n);
+		preconditionMasks = masks(preconditions);
+		addMasks = masks(adds);
+		deleteMasks = masks(deletes);
+	}
+	
+	/**
+	 * Returns the masks of some facts in the words of the action.
+	 */
+	private long[] masks(int[] facts) {
+		long[] masks = new long[words.length];
+		for (int fact : facts) {
+			masks[Arrays.binarySearch(words, fact >>> 6)] |= 1L << fact;
+		}
+		return masks;
+	}
+	
+	
+	/* Getters and setters */
+	
+	public int getId() {
+		return id;
+	}
+	
+	public Operator getOperator() {
+		return operator;
+	}
+	
+	public int[] getPreconditions() {
+		return preconditions;
+	}
+	
+	public int[] getAdds() {
+		return adds;
+	}
+	
+	public int[] getDeletes() {
+		return deletes;
+	}
+	
+	/**
+	 * Returns the indexes of the words of a bitset over the facts that
+	 * have some fact of the tables, in increasing order.
+	 */
+	public int[] getWords() {
+		return words;
+	}
+	
+	public long[] getPreconditionMasks() {
+		return preconditionMasks;
+	}
+	
+	public long[] getAddMasks() {
+		return addMasks;
+	}
+	
+	public long[] getDeleteMasks() {
+		return deleteMasks;
+	}
+	
+	public String toString() {
+		return operator.toString();
+	}
+	
+}
@@ -0,0 +1,145 @@
+package strips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 
+ * A GroundProblem is the result of grounding a problem: the facts
+ * reachable from its initial state, numbered from 0, and the ground
+ * actions that can be applied from it.
+ * 
+ * Facts are the instantiated predicates of the problem. Those that
+ * cannot be reached have no identifier, and ground actions do not
+ * refer to them. The actions that add every fact are indexed by its
+ * identifier, so the planner only tries the operators that can
+ * achieve a goal from the initial state.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class GroundProblem {
+	
+	private List<Predicate> facts;
+	private Map<Predicate, Integer> ids;
+	private List<GroundAction> actions;
+	private int[] initialState;
+	private int[] goals;
+	private List<Predicate> unreachableGoals;
+	
+	/* Actions that add every fact, by its identifier, built when first needed */
+	private List<List<GroundAction>> achievers;
+	
+	/**
+	 * Creates a GroundProblem with its reachable facts, in order of
+	 * reachability.
+	 */
+	GroundProblem(List<Predicate> facts) {
+		this.facts = Collections.unmodifiableList(facts);
+		ids = new HashMap<>();
+		for (int i=0; i<facts.size(); i++) {
+			ids.put(facts.get(i), i);
+		}
+		actions = new ArrayList<>();
+		unreachableGoals = new ArrayList<>();
+	}
+	
+	/**
+	 * Returns the identifier of a fact, or -1 if it is not reachable.
+	 */
+	public int getFactId(Predicate fact) {
+		Integer id = ids.get(fact);
+		return (id == null) ? -1 : id;
+	}
+	
+	/**
+	 * Returns the fact identified by id.
+	 */
+	public Predicate getFact(int id) {
+		return facts.get(id);
+	}
+	
+	/**
+	 * Returns the number of reachable facts.
+	 */
+	public int getNumFacts() {
+		return facts.size();
+	}
+	
+	/**
+	 * Returns the identifiers of the facts of a list that are reachable.
+	 */
+	int[] getFactIds(List<Predicate> preds) {
+		int[] found = new int[preds.size()];
+		int n = 0;
+		for (Predicate pred : preds) {
+			int id = getFactId(pred);
+			if (id >= 0) {
+				found[n++] = id;
+			}
+		}
+		return (n == found.length) ? found : Arrays.copyOf(found, n);
+	}
+	
+	/**
+	 * Returns the ground actions that add a fact, given its identifier,
+	 * in the order they were grounded.
+	 */
+	public List<GroundAction> getAchievers(int fact) {
+		if (achievers == null) {
+			achievers = new ArrayList<>(facts.size());
+			for (int i=0; i<facts.size(); i++) {
+				achievers.add(new ArrayList<GroundAction>());
+			}
+			for (GroundAction action : actions) {
+				for (int add : action.getAdds()) {
+					achievers.get(add).add(action);
+				}
+			}
+		}
+		return achievers.get(fact);
+	}
+	
+	/**
+	 * Checks whether all the goals of the problem are reachable.
+	 */
+	public boolean isSolvable() {
+		return unreachableGoals.isEmpty();
+	}
+	
+	
+	/* Getters and setters */
+	
+	public List<Predicate> getFacts() {
+		return facts;
+	}
+	
+	public List<GroundAction> getActions() {
+		return actions;
+	}
+	
+	public int[] getInitialState() {
+		return initialState;
+	}
+	
+	void setInitialState(int[] initialState) {
+		this.initialState = initialState;
+	}
+	
+	public int[] getGoals() {
+		return goals;
+	}
+	
+	void setGoals(int[] goals) {
+		this.goals = goals;
+	}
+	
+	public List<Predicate> getUnreachableGoals() {
+		return unreachableGoals;
+	}
+	
+}
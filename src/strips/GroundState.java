@@ -0,0 +1,183 @@
+package strips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 
+ * A GroundState is a state of a ground problem, kept as a bitset over
+ * the facts numbered by the GroundProblem: the bit of a fact is set if
+ * the fact holds in the state.
+ * 
+ * Checking a fact is a bit test and applying a ground action clears the
+ * bits of its deletes and sets the ones of its adds, as (bits & ~deletes)
+ * | adds, only in the words where the action has some fact. So a state
+ * takes a few words and copying it is cheap enough for search.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class GroundState {
+	
+	private GroundProblem problem;
+	private long[] words;
+	
+	/**
+	 * Creates the initial state of a ground problem.
+	 */
+	public GroundState(GroundProblem problem) {
+		this.problem = problem;
+		words = mask(problem.getInitialState(), problem.getNumFacts());
+	}
+	
+	/**
+	 * Creates the ground state with the facts of a State that are
+	 * reachable in a ground problem.
+	 */
+	public GroundState(GroundProblem problem, State state) {
+		this.problem = problem;
+		words = mask(problem.getFactIds(state.getPredicates()), problem.getNumFacts());
+	}
+	
+	private GroundState(GroundProblem problem, long[] words) {
+		this.problem = problem;
+		this.words = words;
+	}
+	
+	/**
+	 * Returns the bitset of some facts out of numFacts.
+	 */
+	private static long[] mask(int[] facts, int numFacts) {
+		long[] mask = new long[(numFacts + 63) >>> 6];
+		for (int fact : facts) {
+			mask[fact >>> 6] |= 1L << fact;
+		}
+		return mask;
+	}
+	
+	/**
+	 * Checks whether a fact, given its identifier, holds in the state.
+	 */
+	public boolean contains(int fact) {
+		return (words[fact >>> 6] & (1L << fact)) != 0;
+	}
+	
+	/**
+	 * Checks whether a predicate holds in the state. Unreachable
+	 * predicates never hold.
+	 */
+	public boolean contains(Predicate pred) {
+		int fact = problem.getFactId(pred);
+		return fact >= 0 && contains(fact);
+	}
+	
+	/**
+	 * Checks whether the preconditions of a ground action hold in the state.
+	 */
+	public boolean isApplicable(GroundAction action) {
+		int[] indexes = action.getWords();
+		long[] preconditions = action.getPreconditionMasks();
+		for (int i=0; i<indexes.length; i++) {
+			if ((words[indexes[i]] & preconditions[i]) != preconditions[i]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks whether all the goals of the problem hold in the state.
+	 */
+	public boolean isGoal() {
+		for (int fact : problem.getGoals()) {
+			if (!contains(fact)) return false;
+		}
+		return problem.isSolvable();
+	}
+	
+	/**
+	 * Applies a ground action to the state, deleting and then 
+	 * adding the facts of its tables.
+	 */
+	public void apply(GroundAction action) {
+		int[] indexes = action.getWords();
+		long[] deletes = action.getDeleteMasks();
+		long[] adds = action.getAddMasks();
+		for (int i=0; i<indexes.length; i++) {
+			int w = indexes[i];
+			words[w] = (words[w] & ~deletes[i]) | adds[i];
+		}
+	}
+	
+	public void add(int fact) {
+		words[fact >>> 6] |= 1L << fact;
+	}
+	
+	public void remove(int fact) {
+		words[fact >>> 6] &= ~(1L << fact);
+	}
+	
+	/**
+	 * Returns a copy of the state, that can be changed on its own.
+	 */
+	public GroundState copy() {
+		return new GroundState(problem, Arrays.copyOf(words, words.length));
+	}
+	
+	/**
+	 * Returns the number of facts that hold in the state.
+	 */
+	public int size() {
+		int size = 0;
+		for (long word : words) {
+			size += Long.bitCount(word);
+		}
+		return size;
+	}
+	
+	/**
+	 * Returns the facts that hold in the state, by their identifiers.
+	 */
+	public List<Predicate> getPredicates() {
+		List<Predicate> preds = new ArrayList<>();
+		for (int i=0; i<words.length; i++) {
+			for (long word = words[i]; word != 0; word &= word - 1) {
+				preds.add(problem.getFact((i << 6) + Long.numberOfTrailingZeros(word)));
+			}
+		}
+		return preds;
+	}
+	
+	/**
+	 * Returns a State with the facts that hold in this one.
+	 */
+	public State toState() {
+		return new State(getPredicates());
+	}
+	
+	
+	/* Getters and setters */
+	
+	public GroundProblem getProblem() {
+		return problem;
+	}
+	
+	public long[] getWords() {
+		return words;
+	}
+	
+	public boolean equals(Object obj) {
+		if (!(obj instanceof GroundState)) return false;
+		
+		GroundState other = (GroundState) obj;
+		return problem == other.problem && Arrays.equals(words, other.words);
+	}
+	
+	public int hashCode() {
+		return Arrays.hashCode(words);
+	}
+	
+	public String toString() {
+		return new PredicateSet(getPredicates()).toString();
+	}
+	
+}
@@ -0,0 +1,268 @@
+package strips;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * A Grounder instantiates the operators of a problem with the objects
+ * of its initial and final states, keeping only the ground actions
+ * that can be applied from the initial state.
+ *
+ * It computes a relaxed reachability fixpoint: starting from the facts
+ * of the initial state, every operator is instantiated with the facts
+ * reached so far that match its preconditions, and the facts it adds
+ * are reached too, ignoring the deletes. It stops when no new fact is
+ * reached, so the actions whose preconditions can never hold are pruned.
+ *
+ * The parameters of an operator that do not appear in its preconditions
+ * take every object with the same parameter name. Operators are grounded
+ * by their tables, so an operator whose application does more than adding
+ * and deleting them (like Move, updating the steps) keeps doing it only
+ * when its operator is applied to a State.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class Grounder {
+
+	private List<Operator> operators;
+	private State initialState;
+	private State finalState;
+
+	/* Objects of the problem, by the identifier of the parameter name */
+	private Map<Integer, List<Parameter>> objects;
+
+	/* Facts reached, in order and by the identifier of their name */
+	private Set<Predicate> reached;
+	private Map<Integer, List<Predicate>> reachedByName;
+	private List<Predicate> pending;
+
+	/* Ground operators found, and the values of their arguments */
+	private List<Operator> grounded;
+	private Set<List<Integer>> found;
+
+	/**
+	 * Creates a Grounder for the operators of a problem and its
+	 * initial and final states.
+	 */
+	public Grounder(List<Operator> operators, State initialState, State finalState) {
+		this.operators = operators;
+		this.initialState = initialState;
+		this.finalState = finalState;
+	}
+
+	/**
+	 * Grounds the problem, returning its reachable facts and actions.
+	 */
+	public GroundProblem ground() {
+		objects = new HashMap<>();
+		collectObjects(initialState);
+		collectObjects(finalState);
+
+		reached = new LinkedHashSet<>();
+		reachedByName = new HashMap<>();
+		pending = new ArrayList<>();
+		grounded = new ArrayList<>();
+		found = new HashSet<>();
+		for (Predicate pred : initialState.predicates()) {
+			reach(pred);
+		}
+		indexPending();
+
+		/* Grounds the operators again while new facts are reached */
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Operator op : operators) {
+				Operator free = op.copy();
+				match(free, free.getPreconditions(), 0);
+				changed = changed || !pending.isEmpty();
+				indexPending();
+			}
+		}
+
+		return compile();
+	}
+
+	/**
+	 * Numbers the facts reached and builds the ground actions with them.
+	 */
+	private GroundProblem compile() {
+		GroundProblem problem = new GroundProblem(new ArrayList<>(reached));
+		for (Operator op : grounded) {
+			problem.getActions().add(new GroundAction(problem.getActions().size(), op,
+					problem.getFactIds(op.getPreconditions()), problem.getFactIds(op.getAdds()),
+					problem.getFactIds(op.getDeletes())));
+		}
+		problem.setInitialState(problem.getFactIds(initialState.getPredicates()));
+		problem.setGoals(problem.getFactIds(finalState.getPredicates()));
+		for (Predicate goal : finalState.predicates()) {
+			if (problem.getFactId(goal) < 0) {
+				problem.getUnreachableGoals().add(goal);
+			}
+		}
+		return problem;
+	}
+
+	/**
+	 * Matches the preconditions of an operator from the i-th one against
+	 * the facts reached, binding its arguments.
+	 */
+	private void match(Operator op, List<Predicate> preconditions, int i) {
+		if (i == preconditions.size()) {
+			assign(op, 0);
+			return;
+		}
+
+		Predicate prec = preconditions.get(i);
+		List<Predicate> facts = reachedByName.get(prec.getNameId());
+		if (facts == null) return;
+
+		List<Parameter> bound = new ArrayList<>();
+		for (Predicate fact : facts) {
+			if (unify(prec, fact, bound)) {
+				match(op, preconditions, i+1);
+			}
+			for (Parameter p : bound) {
+				unbind(op, p);
+			}
+			bound.clear();
+		}
+	}
+
+	/**
+	 * Binds the uninstantiated parameters of a precondition to the values of
+	 * a fact, adding them to bound. Returns false if they do not match.
+	 */
+	private boolean unify(Predicate prec, Predicate fact, List<Parameter> bound) {
+		if (prec.getParams().size() != fact.getParams().size()) return false;
+
+		for (int j=0; j<prec.getParams().size(); j++) {
+			Parameter p = prec.getParams().get(j);
+			Parameter value = fact.getParams().get(j);
+			if (!p.isInstantiated()) {
+				p.copyValue(value);
+				bound.add(p);
+			} else if (p.getValueId() != value.getValueId()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gives the arguments of an operator from the i-th one that are still
+	 * uninstantiated every object with their name, and records the ground
+	 * operators obtained.
+	 */
+	private void assign(Operator op, int i) {
+		Parameter[] args = op.getArguments();
+		if (i == args.length) {
+			record(op);
+		} else if (args[i].isInstantiated()) {
+			assign(op, i+1);
+		} else {
+			List<Parameter> values = objects.get(args[i].getNameId());
+			if (values == null) return;
+
+			for (Parameter value : values) {
+				args[i].copyValue(value);
+				assign(op, i+1);
+			}
+			args[i].copyValue(op.getSchema().getVariable(i));
+		}
+	}
+
+	/**
+	 * Records a ground operator if it was not found before, reaching the
+	 * facts that it adds.
+	 */
+	private void record(Operator op) {
+		List<Integer> key = new ArrayList<>();
+		key.add(op.getSchema().getId());
+		for (Parameter arg : op.getArguments()) {
+			key.add(arg.getValueId());
+		}
+
+		if (found.add(key)) {
+			grounded.add(op.copy());
+			for (Predicate add : op.getAdds()) {
+				reach(add);
+			}
+		}
+	}
+
+	/**
+	 * Gives back its variable to an argument of an operator.
+	 */
+	private void unbind(Operator op, Parameter p) {
+		Parameter[] args = op.getArguments();
+		for (int i=0; i<args.length; i++) {
+			if (args[i] == p) {
+				p.copyValue(op.getSchema().getVariable(i));
+			}
+		}
+	}
+
+	/**
+	 * Adds a copy of a fact to the reached ones, if it was not reached before.
+	 * It is matched against the preconditions once it has been indexed.
+	 */
+	private void reach(Predicate fact) {
+		if (!reached.contains(fact)) {
+			List<Parameter> ps = new ArrayList<>();
+			for (Parameter p : fact.getParams()) {
+				ps.add(new Parameter(p));
+			}
+			Predicate copied = new Predicate(fact.getName(), fact.getNameId(), ps);
+			reached.add(copied);
+			pending.add(copied);
+		}
+	}
+
+	/**
+	 * Indexes by name the facts reached since the last time, so they
+	 * can be matched against the preconditions.
+	 */
+	private void indexPending() {
+		for (Predicate fact : pending) {
+			List<Predicate> facts = reachedByName.get(fact.getNameId());
+			if (facts == null) {
+				facts = new ArrayList<>();
+				reachedByName.put(fact.getNameId(), facts);
+			}
+			facts.add(fact);
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Collects the values of the parameters of a state as objects.
+	 */
+	private void collectObjects(State state) {
+		for (Predicate pred : state.predicates()) {
+			for (Parameter p : pred.getParams()) {
+				List<Parameter> values = objects.get(p.getNameId());
+				if (values == null) {
+					values = new ArrayList<>();
+					objects.put(p.getNameId(), values);
+				}
+
+				boolean repeated = false;
+				for (Parameter value : values) {
+					repeated = repeated || value.getValueId() == p.getValueId();
+				}
+				if (!repeated) {
+					values.add(new Parameter(p));
+				}
+			}
+		}
+	}
+
+}
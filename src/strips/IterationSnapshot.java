@@ -0,0 +1,234 @@
+package strips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * An IterationSnapshot is an immutable copy of the state and the stack of
+ * one iteration of the planner, kept as the identifiers of their symbols.
+ * Taking it only copies integers, so the planner does not build any text:
+ * the texts are built later, by the thread that writes the log, exactly
+ * as the toString methods of the elements would have written them.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+class IterationSnapshot {
+
+	/* Kinds of stacked elements, as in the events of the EventTraceSink */
+	private static final int PREDICATE = EventTraceSink.PREDICATE;
+	private static final int OPERATOR = EventTraceSink.OPERATOR;
+	private static final int SET = EventTraceSink.SET;
+	private static final int STATE = 3;
+	private static final int TEXT = 4;
+
+	private int number;
+	private SymbolTable symbols;
+
+	/*
+	 * The state and the elements of the stack, from the top to the bottom.
+	 * A predicate is its name, its number of parameters and their values,
+	 * and a state its predicates and the names of its fluents, whose values
+	 * are kept apart.
+	 */
+	private int[] codes;
+	private int size;
+	private long[] values;
+	private int fluents;
+	private List<String> texts;
+
+	/**
+	 * Copies the state and the stack of an iteration, whose symbols are
+	 * in the current SymbolTable of the thread.
+	 */
+	IterationSnapshot(int number, State state, PlannerStack stack) {
+		this.number = number;
+		symbols = SymbolTable.current();
+		codes = new int[64];
+		size = 0;
+		values = new long[4];
+		fluents = 0;
+
+		addState(state);
+		List<Stackable> elems = stack.getStack();
+		add(elems.size());
+		for (int i=elems.size()-1; i>=0; i--) {
+			addElement(elems.get(i));
+		}
+	}
+
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * Returns the text of the state, like State.toString.
+	 */
+	public String getState() {
+		StringBuilder s = new StringBuilder();
+		appendState(s, 0, 0);
+		return s.toString();
+	}
+
+	/**
+	 * Returns the texts of the elements of the stack, from the top to the
+	 * bottom, like their toString methods.
+	 */
+	public List<String> getStack() {
+		int pos = skipPredicates(1, codes[0]);
+		int fluent = codes[pos];
+		pos += 1 + fluent;
+		int elems = codes[pos++];
+		List<String> stack = new ArrayList<>(elems);
+		for (int i=0; i<elems; i++) {
+			StringBuilder s = new StringBuilder();
+			int kind = codes[pos++];
+			if (kind == TEXT) {
+				s.append(texts.get(codes[pos++]));
+			} else if (kind == STATE) {
+				int next = skipPredicates(pos + 1, codes[pos]);
+				pos = appendState(s, pos, fluent);
+				fluent += codes[next];
+			} else if (kind == SET) {
+				int preds = codes[pos++];
+				s.append('[');
+				for (int j=0; j<preds; j++) {
+					pos = appendPredicate(s, pos);
+					s.append((j < preds-1) ? "; " : "]");
+				}
+			} else {
+				pos = appendSingle(s, pos, kind == OPERATOR);
+			}
+			stack.add(s.toString());
+		}
+		return stack;
+	}
+
+	/**
+	 * Copies an element of the stack. Elements other than predicates,
+	 * operators and plain sets of predicates are kept as their text.
+	 */
+	private void addElement(Stackable elem) {
+		if (elem instanceof Predicate) {
+			add(PREDICATE);
+			addSingle((Predicate) elem);
+		} else if (elem instanceof Operator) {
+			add(OPERATOR);
+			addSingle((Operator) elem);
+		} else if (elem instanceof State) {
+			add(STATE);
+			addState((State) elem);
+		} else if (elem instanceof PredicateSet) {
+			add(SET);
+			add(((PredicateSet) elem).predicates().size());
+			for (Predicate pred : ((PredicateSet) elem).predicates()) {
+				addSingle(pred);
+			}
+		} else {
+			if (texts == null) {
+				texts = new ArrayList<>();
+			}
+			add(TEXT);
+			add(texts.size());
+			texts.add(elem.toString());
+		}
+	}
+
+	/**
+	 * Copies the predicates of a state and its fluents.
+	 */
+	private void addState(State state) {
+		add(state.size());
+		for (Predicate pred : state.predicates()) {
+			addSingle(pred);
+		}
+		int count = state.getFluentCount();
+		add(count);
+		for (int i=0; i<count; i++) {
+			add(state.getFluentName(i));
+			if (fluents == values.length) {
+				values = Arrays.copyOf(values, fluents * 2);
+			}
+			values[fluents++] = state.getFluentValue(i);
+		}
+	}
+
+	/**
+	 * Copies the name of an element and the current values of its parameters.
+	 */
+	private void addSingle(SingleStackable elem) {
+		List<Parameter> params = elem.getParams();
+		add(elem.getNameId());
+		add(params.size());
+		for (int i=0; i<params.size(); i++) {
+			add(params.get(i).getValueId());
+		}
+	}
+
+	private void add(int code) {
+		if (size == codes.length) {
+			codes = Arrays.copyOf(codes, size * 2);
+		}
+		codes[size++] = code;
+	}
+
+	/**
+	 * Returns the position after a number of predicates starting at pos.
+	 */
+	private int skipPredicates(int pos, int preds) {
+		for (int i=0; i<preds; i++) {
+			pos += 2 + codes[pos + 1];
+		}
+		return pos;
+	}
+
+	/**
+	 * Writes the state at pos, like State.toString, whose fluents have
+	 * their values from the position fluent, and returns the position
+	 * after it.
+	 */
+	private int appendState(StringBuilder s, int pos, int fluent) {
+		s.append('[');
+		int preds = codes[pos++];
+		int count = codes[skipPredicates(pos, preds)];
+		for (int i=0; i<preds; i++) {
+			pos = appendPredicate(s, pos);
+			s.append((count > 0 || i < preds-1) ? "; " : "]");
+		}
+		pos++;
+		for (int i=0; i<count; i++) {
+			s.append(symbols.symbol(codes[pos++])).append('=').append(values[fluent + i]);
+			s.append((i < count-1) ? "; " : "]");
+		}
+		return pos;
+	}
+
+	/**
+	 * Writes the predicate at pos, like Predicate.toString, and returns
+	 * the position after it.
+	 */
+	private int appendPredicate(StringBuilder s, int pos) {
+		return appendSingle(s, pos, false);
+	}
+
+	/**
+	 * Writes the element at pos and returns the position after it. Operators
+	 * always open their parenthesis, while predicates without parameters
+	 * are written without them.
+	 */
+	private int appendSingle(StringBuilder s, int pos, boolean operator) {
+		s.append(symbols.symbol(codes[pos++]));
+		int params = codes[pos++];
+		if (operator || params > 0) {
+			s.append('(');
+		}
+		for (int i=0; i<params; i++) {
+			s.append(symbols.symbol(codes[pos++]));
+			s.append((i < params-1) ? ", " : ")");
+		}
+		return pos;
+	}
+
+}
@@ -2,8 +2,21 @@ package strips;
 
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import strips.PlannerListener.Phase;
 
 /**
  * 
@@ -13,7 +26,28 @@ import java.util.List;
  * 
  * The linear planner uses a stack of goals to select the sub-problems
  * to solve at each step. It also logs the state of the problem at every
- * step.
+ * step, if its TraceSink is tracing with the FULL level.
+ * 
+ * By default, the planner commits to the first operator and the first
+ * instance it finds for every goal. It can also run in backtracking mode,
+ * where those choices are undone and tried again when a branch fails, a
+ * goal depends on itself, the goals get nested too deeply, or the plan
+ * reaches a state it had already reached, going round in a loop.
+ * 
+ * A plan can also be executed with a deadline, a maximum number of
+ * iterations and a CancellationToken, checked at every iteration. When
+ * one of them stops the planner, it returns a PlanResult with what it
+ * had done so far instead of running on.
+ * 
+ * New facts and goals can be injected into a planner while it runs, from
+ * another thread, or once it has finished. A finished planner is then run
+ * again with replan, which continues from its current state and returns
+ * only the operators added to the plan, so the cost of replanning depends
+ * on the change and not on the whole problem.
+ * 
+ * What the planner does can be followed by PlannerListeners, like the
+ * PlannerMetrics, without writing the log. The time of its phases is
+ * only measured when it has listeners.
  * 
  * As the LinearPlanner is a complex object, it comes with a builder in
  * the LinearPlannerBuilder class. It helps constructing the linear planner
@@ -27,34 +61,84 @@ public class LinearPlanner {
 	/* Attributes needed for the log */
 	private int iteration;
 	private long time;
-	private PrintStream logOutput;
+	private TraceSink trace;
+	private TraceLevel traceLevel;
+	private PlannerListeners listeners;
+	private boolean timing;
 	
 	/* Attributes for the linear planner */
 	private List<Predicate> availablePredicates;
 	private List<Operator> availableOperators;
+	private AchieverIndex achievers;
 	private List<Operator> plan;
 	private State currentState;
 	private State finalState;
 	private Intelligence intelligence;
 	private PlannerStack stack;
 	
+	/* Facts and goals injected from any thread, applied by the planner */
+	private Queue<Injection> injections;
+	private boolean goalsInjected;
+	
+	/* Limits of the current execution, only checked if limited */
+	private boolean limited;
+	private long deadline;
+	private int maxIterations;
+	private CancellationToken token;
+	
+	/* Attributes for the backtracking mode */
+	private boolean backtracking;
+	private int maxDepth;
+	private int maxNodes;
+	private ActiveGoals goals;
+	
+	/* The grounded problem, whose actions are the only achievers until something is injected */
+	private GroundProblem groundProblem;
+	private boolean groundInjected;
+	
+	/* First operator of the plan that backtracking can still undo, or -1 */
+	private int tentative;
+	
 	/**
 	 * Creates a linear planner that solves a problem defined by its predicates, its operators,
 	 * and its initial and final state. It also specifies an path for the log to be output.
 	 */
 	public LinearPlanner(List<Predicate> availablePredicates, List<Operator> availableOperators,
 			State currentState, State finalState, Intelligence intelligence, PrintStream logOutput) throws FileNotFoundException {
+		this(availablePredicates, availableOperators, new AchieverIndex(availableOperators),
+				currentState, finalState, intelligence, 
+				(logOutput == null) ? null : new AsyncTraceSink(logOutput, TraceLevel.FULL));
+	}
+	
+	/**
+	 * Creates a linear planner like the previous constructor, but using an index of
+	 * the achievers of the operators that has already been compiled, and a sink for the
+	 * log. If the sink is null, nothing is logged.
+	 */
+	public LinearPlanner(List<Predicate> availablePredicates, List<Operator> availableOperators,
+			AchieverIndex achievers, State currentState, State finalState, Intelligence intelligence, 
+			TraceSink trace) throws FileNotFoundException {
 		iteration = 0;
 		time = 0L;
 		this.availablePredicates = availablePredicates;
 		this.availableOperators = availableOperators;
+		this.achievers = achievers;
 		plan = new ArrayList<Operator>();
 		this.currentState = currentState;
 		this.finalState = finalState;
 		this.intelligence = intelligence;
 		stack = new PlannerStack();
+		injections = new ConcurrentLinkedQueue<>();
+		goalsInjected = false;
+		tentative = -1;
 
-		this.logOutput = logOutput;
+		listeners = new PlannerListeners();
+		timing = false;
+		this.trace = trace;
+		traceLevel = (trace == null) ? TraceLevel.OFF : trace.getLevel();
+		if (trace != null) {
+			trace.attach(currentState, stack);
+		}
 	}
 	
 	/**
@@ -62,74 +146,477 @@ public class LinearPlanner {
 	 * to be followed for getting to the final state from the initial state.
 	 */
 	public List<Operator> executePlan() {
-		time = System.currentTimeMillis();
+		listeners.started(this);
+		try {
+			return backtracking ? executeBacktrackingPlan() : executeLinearPlan();
+		} finally {
+			flushLog();
+			listeners.finished(this);
+		}
+	}
+	
+	/**
+	 * Executes the planning algorithm like executePlan, but stops when the
+	 * timeout (in milliseconds) has passed, maxIterations iterations have been
+	 * done, or the token is cancelled, or the thread interrupted. A timeout
+	 * or maxIterations of 0 or less, or a null token, are not checked.
+	 * 
+	 * Returns the status of the execution, the plan found or its beginning,
+	 * the stack left and the metrics of the execution. Planning errors are
+	 * returned as a FAILED status instead of thrown.
+	 * 
+	 * In backtracking mode, the operators of a plan that is not found are
+	 * only tentative, as the branch they belong to could still be undone, so
+	 * the plan of the result only has the ones committed before. They are
+	 * still in getPlan and in the current state, and they are committed if a
+	 * later execution finds the plan.
+	 */
+	public PlanResult executePlan(long timeout, int maxIterations, CancellationToken token) {
+		PlannerMetrics metrics = new PlannerMetrics();
+		addListener(metrics);
+		limited = true;
+		deadline = (timeout > 0) ? System.nanoTime() + timeout * 1000000L : 0L;
+		this.maxIterations = (maxIterations > 0) ? iteration + maxIterations : 0;
+		this.token = token;
 		
-		/* The stack is initialized with the predicates of the goal state */
-		stack.push(finalState);
-		for (Predicate p : intelligence.orderFinalState(currentState, finalState)) {
-			stack.push(p);
+		PlanResult.Status status = PlanResult.Status.SOLVED;
+		String error = null;
+		try {
+			executePlan();
+		} catch (PlanLimitException e1) {
+			status = e1.getStatus();
+			error = e1.getMessage();
+		} catch (PlanningException e2) {
+			status = PlanResult.Status.FAILED;
+			error = e2.getMessage();
+		} finally {
+			limited = false;
+			this.token = null;
+			removeListener(metrics);
+		}
+		
+		List<String> left = new ArrayList<>();
+		for (int i=stack.getStack().size()-1; i>=0; i--) {
+			left.add(stack.getStack().get(i).toString());
+		}
+		List<Operator> found = (tentative < 0) ? plan : plan.subList(0, tentative);
+		return new PlanResult(status, new ArrayList<>(found), left, metrics.snapshot(),
+				iteration, time, error);
+	}
+	
+	/**
+	 * Injects new facts into the current state and new goals into the final
+	 * state. It can be called from any thread, also while the planner runs:
+	 * in linear mode, the changes are applied at the next iteration, and the
+	 * new goals are achieved after the ones already stacked. In backtracking
+	 * mode, or once the planner has finished, they are applied when the plan
+	 * is executed again with replan.
+	 */
+	public void inject(Collection<Predicate> facts, Collection<Predicate> goals) {
+		injections.add(new Injection(new ArrayList<>(facts), new ArrayList<>(goals)));
+	}
+	
+	/**
+	 * Executes the plan again after injecting facts or goals, continuing from
+	 * the current state, and returns the operators added to the plan.
+	 */
+	public List<Operator> replan() {
+		int start = plan.size();
+		executePlan();
+		return new ArrayList<>(plan.subList(start, plan.size()));
+	}
+	
+	/**
+	 * Applies a plan found before for the same problem, like a PlanCache
+	 * does, instead of executing the algorithm. The listeners are notified
+	 * of every operator applied and committed.
+	 */
+	void replay(List<Operator> ops) {
+		listeners.started(this);
+		time = System.currentTimeMillis();
+		try {
+			for (Operator op : ops) {
+				currentState.applyOperator(op);
+				plan.add(op);
+				listeners.applied(op);
+				listeners.committed(op);
+			}
+		} finally {
+			time = System.currentTimeMillis() - time;
+			listeners.finished(this);
+		}
+	}
+	
+	/**
+	 * Applies the facts and goals injected so far. The goals are added to the
+	 * final state, which is marked as changed: if it is still stacked, it is
+	 * not popped until all its goals hold, and otherwise it is stacked again
+	 * at the end.
+	 */
+	private void applyInjections() {
+		Injection injection;
+		while ((injection = injections.poll()) != null) {
+			/* Injected objects were not grounded, so any achiever can be needed */
+			groundInjected = true;
+			currentState.addPredicates(injection.facts);
+			finalState.addPredicates(injection.goals);
+			if (!injection.goals.isEmpty()) {
+				goalsInjected = true;
+			}
+		}
+	}
+	
+	/**
+	 * Checks whether goals have been injected after the final state was
+	 * checked, stacking it again so they are achieved too.
+	 */
+	private boolean restackGoals() {
+		applyInjections();
+		if (goalsInjected) {
+			goalsInjected = false;
+			initStack();
+			return true;
+		} else return false;
+	}
+	
+	/**
+	 * Executes the algorithm committing to the first choice for every goal.
+	 * A planner stopped by a limit continues with the stack it left, and a
+	 * finished one starts again from the goal state.
+	 */
+	private List<Operator> executeLinearPlan() {
+		time = System.currentTimeMillis();
+		applyInjections();
+		if (stack.isEmpty()) {
+			goalsInjected = false;
+			initStack();
 		}
 		
 		/* 
 		 * Every step of the algorithm, the state of the problem and of the
 		 * stack is written, and the head element of the stack is unstacked. 
 		 */
-		while(!stack.isEmpty()) {
-			iteration++;
-			logStack();
-			Stackable elem = stack.pop();
-			
-			if (elem instanceof Operator) {
-				Operator op = (Operator) elem;
-				
-				/* Applies the unstacked operator and adds it to the plan */
-				currentState.applyOperator(op);
-				plan.add(op);
-			} else if (elem instanceof PredicateSet) {
-				PredicateSet set = (PredicateSet) elem;
+		try {
+			while(!stack.isEmpty() || restackGoals()) {
+				checkLimits();
+				if (!injections.isEmpty()) {
+					applyInjections();
+				}
+				iteration++;
+				logStack();
+				Stackable elem = stack.pop();
+				listeners.iteration(iteration, elem);
 				
-				/* 
-				 * Checks whether all the predicates of the set are true in
-				 * the current state.
-				 */
-				for (Predicate p : set.getPredicates()) {
-					if (!currentState.contains(p)) {
-						/* Stacks predicates that are not true yet */
-						stack.push(p);
+				if (elem instanceof Operator) {
+					Operator op = (Operator) elem;
+					
+					/* Applies the unstacked operator and adds it to the plan, for good */
+					currentState.applyOperator(op);
+					plan.add(op);
+					listeners.applied(op);
+					listeners.committed(op);
+				} else if (elem instanceof PredicateSet) {
+					checkSet((PredicateSet) elem);
+				} else if (elem instanceof Predicate) {
+					Predicate pred = (Predicate) elem;
+					
+					/* Instantiates the lacking parameters */
+					for (Parameter p : pred.getParams()) {
+						if (!p.isInstantiated()) {
+							long start = now();
+							instantiate(pred);
+							timed(Phase.INSTANTIATE, start);
+						}
+					}
+					
+					/* 
+					 * Once totally instantiated, checks if the parameter is true
+					 * in the current state.
+					 */
+					if (!truePredicate(pred)) {
+						/* Stacks the operator and preconditions needed */
+						long start = now();
+						Operator op = selectOperator(pred);
+						timed(Phase.SELECT_OPERATOR, start);
+						listeners.selected(pred, op);
+						stackOperator(op);
 					}
 				}
-			} else if (elem instanceof Predicate) {
-				Predicate pred = (Predicate) elem;
+			}
+		} finally {
+			time = System.currentTimeMillis() - time;
+		}
+		return plan;
+	}
+	
+	/**
+	 * Executes the STRIPS planning algorithm in backtracking mode. Every time
+	 * a goal is instantiated from the current state, or an operator is selected
+	 * for it, a choice point is kept with the other instances or operators.
+	 * When a goal cannot be achieved, depends on itself (it is already being
+	 * achieved deeper in the stack), makes more than maxDepth goals nested,
+	 * or an operator leads to a state already reached by the plan of the
+	 * branch, the planner undoes the changes back to the last choice point
+	 * and takes its next alternative. Repeated states are told by their
+	 * Zobrist hash, so checking them takes constant time.
+	 * 
+	 * Throws a PlanningException if every alternative fails, or if maxNodes
+	 * iterations are done without finding a plan.
+	 */
+	private List<Operator> executeBacktrackingPlan() {
+		time = System.currentTimeMillis();
+		
+		/* Injections are applied before the trail, so they are never undone */
+		applyInjections();
+		int start = plan.size();
+		if (tentative < 0) {
+			tentative = start;
+		}
+		BranchStates reached = new BranchStates(currentState, start);
+		Trail trail = new Trail(currentState, stack);
+		Deque<ChoicePoint> choices = new ArrayDeque<>();
+		goals = new ActiveGoals(choices);
+		stack.addListener(goals);
+		if (stack.isEmpty() || goalsInjected) {
+			goalsInjected = false;
+			initStack();
+		}
+		
+		try {
+			int nodes = 0;
+			while(!stack.isEmpty()) {
+				if (nodes++ >= maxNodes) {
+					throw new PlanningException("No plan found within " + maxNodes + " iterations");
+				}
+				checkLimits();
+				iteration++;
+				logStack();
+				Stackable elem = stack.pop();
+				listeners.iteration(iteration, elem);
 				
-				/* Instantiates the lacking parameters */
-				for (Parameter p : pred.getParams()) {
-					if (!p.isInstantiated()) {
-						instantiate(pred);
-					}
+				boolean ok = true;
+				if (elem instanceof Operator) {
+					currentState.applyOperator((Operator) elem);
+					plan.add((Operator) elem);
+					listeners.applied((Operator) elem);
+					ok = reached.reach(currentState);
+				} else if (elem instanceof PredicateSet) {
+					checkSet((PredicateSet) elem);
+				} else if (elem instanceof Predicate) {
+					ok = achieve((Predicate) elem, trail, choices);
 				}
 				
-				/* 
-				 * Once totally instantiated, checks if the parameter is true
-				 * in the current state.
-				 */
-				if (!truePredicate(pred)) {
-					/* Stacks the operator and preconditions needed */
-					Operator selectedOp = selectOperator(pred);
-					stack.push(selectedOp);
-					List<Predicate> precs = 
-							intelligence.orderPreconditions(selectedOp);
-					stack.push(new PredicateSet(precs));
-					for (Predicate onePred : precs) {
-						stack.push(onePred);
-					}
+				if (!ok && !backtrack(trail, choices, reached)) {
+					throw new PlanningException("No plan found: every alternative failed");
 				}
 			}
+			
+			/* Only the plan found can no longer be undone */
+			for (Operator op : plan.subList(tentative, plan.size())) {
+				listeners.committed(op);
+			}
+			tentative = -1;
+		} finally {
+			stack.removeListener(goals);
+			goals = null;
+			trail.detach();
+			time = System.currentTimeMillis() - time;
 		}
-		
-		time = System.currentTimeMillis() - time;
 		return plan;
 	}
 	
+	/**
+	 * Checks the limits of the execution, if it has any, throwing a
+	 * PlanLimitException when one of them has been reached.
+	 */
+	private void checkLimits() {
+		if (!limited) {
+			return;
+		} else if ((token != null && token.isCancelled()) || Thread.currentThread().isInterrupted()) {
+			throw new PlanLimitException(PlanResult.Status.CANCELLED, "Cancelled");
+		} else if (maxIterations > 0 && iteration >= maxIterations) {
+			throw new PlanLimitException(PlanResult.Status.ITERATION_LIMIT, 
+					"No plan found within " + maxIterations + " iterations");
+		} else if (deadline != 0L && System.nanoTime() - deadline > 0) {
+			throw new PlanLimitException(PlanResult.Status.DEADLINE_EXCEEDED, "Deadline exceeded");
+		}
+	}
+	
+	/**
+	 * Achieves a popped predicate in backtracking mode, opening a choice point
+	 * if there are alternatives. Returns false if the predicate cannot be achieved.
+	 */
+	private boolean achieve(Predicate pred, Trail trail, Deque<ChoicePoint> choices) {
+		/* Instantiates the predicate with any of the predicates of the state matching it */
+		if (!pred.isInstantiated()) {
+			long start = now();
+			List<Predicate> instances = new ArrayList<>();
+			for (Predicate candidate : currentState.getCandidates(pred)) {
+				if (matches(pred, candidate)) {
+					instances.add(candidate);
+				}
+			}
+			timed(Phase.INSTANTIATE, start);
+			if (!instances.isEmpty()) {
+				return open(new ChoicePoint(trail.mark(), goals.mark(), plan.size(), pred, instances), choices);
+			}
+		}
+		
+		if (truePredicate(pred)) {
+			return true;
+		} else if (goals.contains(pred) || goals.size() >= maxDepth) {
+			/* The goal depends on itself, or the goals are nested too deeply */
+			return false;
+		}
+		
+		long start = now();
+		List<Operator> ops = achieversOf(pred);
+		timed(Phase.SELECT_OPERATOR, start);
+		if (ops.isEmpty()) {
+			return false;
+		}
+		return open(new ChoicePoint(trail.mark(), goals.mark(), plan.size(), pred, ops), choices);
+	}
+	
+	/**
+	 * Keeps a new choice point and takes its first alternative.
+	 */
+	private boolean open(ChoicePoint choice, Deque<ChoicePoint> choices) {
+		choices.push(choice);
+		takeNext(choice);
+		return true;
+	}
+	
+	/**
+	 * Undoes the changes done since the last choice point with alternatives
+	 * left, and takes its next alternative. Returns false if there is none.
+	 */
+	private boolean backtrack(Trail trail, Deque<ChoicePoint> choices, BranchStates reached) {
+		while (!choices.isEmpty()) {
+			ChoicePoint choice = choices.peek();
+			trail.rollbackTo(choice.mark);
+			goals.rollbackTo(choice.goalsMark);
+			plan.subList(choice.planSize, plan.size()).clear();
+			reached.truncate(choice.planSize);
+			if (choice.next < choice.alternatives.size()) {
+				listeners.backtracked();
+				takeNext(choice);
+				return true;
+			}
+			choices.pop();
+		}
+		return false;
+	}
+	
+	/**
+	 * Takes the next alternative of a choice point: instantiates the predicate
+	 * with the next instance, or stacks the next operator that achieves it.
+	 */
+	private void takeNext(ChoicePoint choice) {
+		Object alternative = choice.alternatives.get(choice.next++);
+		if (alternative instanceof Operator) {
+			long start = now();
+			Operator op = ((Operator) alternative).instantiate(choice.pred);
+			timed(Phase.SELECT_OPERATOR, start);
+			listeners.selected(choice.pred, op);
+			goals.achieving(op, choice.pred);
+			stackOperator(op);
+		} else {
+			Predicate instance = (Predicate) alternative;
+			long start = now();
+			for (int i=0; i<choice.pred.getParams().size(); i++) {
+				if (!choice.pred.getParams().get(i).isInstantiated()) {
+					stack.translateParameters(choice.pred.getParams().get(i), 
+							instance.getParams().get(i));
+				}
+			}
+			timed(Phase.TRANSLATE_PARAMETERS, start);
+			listeners.instantiated(choice.pred);
+		}
+	}
+	
+	/**
+	 * Checks whether a predicate of the state is an instance of pred, that is,
+	 * it has the same values in all the instantiated parameters of pred.
+	 */
+	private boolean matches(Predicate pred, Predicate candidate) {
+		if (pred.getParams().size() != candidate.getParams().size()) {
+			return false;
+		}
+		for (int i=0; i<pred.getParams().size(); i++) {
+			Parameter p = pred.getParams().get(i);
+			if (p.isInstantiated() && 
+					p.getValueId() != candidate.getParams().get(i).getValueId()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Initializes the stack with the goal state and its predicates.
+	 */
+	private void initStack() {
+		stack.push(finalState);
+		for (Predicate p : intelligence.orderFinalState(currentState, finalState)) {
+			stack.push(p);
+		}
+	}
+	
+	/**
+	 * Checks whether all the predicates of a set are true in the current
+	 * state, and stacks again the ones that are not true yet.
+	 */
+	private void checkSet(PredicateSet set) {
+		if (set == finalState && goalsInjected) {
+			checkGoals();
+			return;
+		}
+		
+		for (Predicate p : set.predicates()) {
+			if (!currentState.contains(p)) {
+				stack.push(p);
+			}
+		}
+	}
+	
+	/**
+	 * Checks the final state after goals were injected into it. If some goal
+	 * does not hold, the final state is stacked again below the goals that do
+	 * not hold, so achieving the new goals cannot undo the others unnoticed.
+	 * Once all its goals hold, the final state is popped for good.
+	 */
+	private void checkGoals() {
+		boolean holds = true;
+		for (Predicate p : finalState.predicates()) {
+			holds = holds && currentState.contains(p);
+		}
+		
+		if (holds) {
+			goalsInjected = false;
+		} else {
+			stack.push(finalState);
+			for (Predicate p : finalState.predicates()) {
+				if (!currentState.contains(p)) {
+					stack.push(p);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Stacks an operator, the set of its preconditions, and every one of 
+	 * its preconditions in the order given by the intelligence.
+	 */
+	private void stackOperator(Operator op) {
+		stack.push(op);
+		List<Predicate> precs = intelligence.orderPreconditions(op);
+		stack.push(new PredicateSet(precs));
+		for (Predicate onePred : precs) {
+			stack.push(onePred);
+		}
+	}
+	
 	/**
 	 * Returns true if pred is part of the current state, false otherwise.
 	 */
@@ -138,23 +625,45 @@ public class LinearPlanner {
 	}
 	
 	/**
-	 * Gets an operator that adds the specified predicate when executed.
+	 * Gets an operator that adds the specified predicate when executed. Throws
+	 * a PlanningException if no available operator adds it.
 	 */
 	private Operator selectOperator(Predicate pred) {
-		boolean found = false;
-		int i;
-		for (i=0; !found && i<availableOperators.size(); i++) {
-			List<Predicate> preds = availableOperators.get(i).getAdds();
-			for (int j=0; !found && j<preds.size(); j++) {
-				if (preds.get(j).getName().equals(pred.getName())) {
-					found = true;
-				}
-			}
+		List<Operator> ops = achieversOf(pred);
+		if (ops.isEmpty()) {
+			throw new PlanningException("No available operator adds the predicate " + pred);
 		}
 		
-		// XXX: only works if problem is well defined. Add robust?
 		/* Instantiates the operator with parameters of the predicate */
-		return availableOperators.get(i-1).instantiate(pred);
+		return ops.get(0).instantiate(pred);
+	}
+	
+	/**
+	 * Returns the operators that add a predicate, in order of priority. If the
+	 * problem was grounded and the predicate is instantiated, only the ones
+	 * with a ground action that adds it are returned, so a goal that cannot
+	 * be reached has no achievers.
+	 */
+	private List<Operator> achieversOf(Predicate pred) {
+		List<Operator> ops = achievers.getAchievers(pred);
+		if (groundProblem == null || groundInjected || !pred.isInstantiated()) {
+			return ops;
+		}
+		int fact = groundProblem.getFactId(pred);
+		if (fact < 0) {
+			return Collections.emptyList();
+		}
+		List<GroundAction> actions = groundProblem.getAchievers(fact);
+		List<Operator> reachable = new ArrayList<>(ops.size());
+		for (Operator op : ops) {
+			for (GroundAction action : actions) {
+				if (action.getOperator().getSchema() == op.getSchema()) {
+					reachable.add(op);
+					break;
+				}
+			}
+		}
+		return reachable;
 	}
 	
 	/**
@@ -164,83 +673,164 @@ public class LinearPlanner {
 	 */
 	private void instantiate(Predicate pred) {
 		boolean changed = false;
-		for (int i=0; !changed && i<currentState.getPredicates().size(); i++) {
-			Predicate currentPred = currentState.getPredicates().get(i);
+		/* Looks for predicates with the same name and arguments in the current state */
+		Iterator<Predicate> candidates = currentState.getCandidates(pred).iterator();
+		while (!changed && candidates.hasNext()) {
+			Predicate currentPred = candidates.next();
 			int changeIndex = -1;
-			/* Looks for predicates with the same name in the current state */
-			if (currentPred.getName().equals(pred.getName())) {
-				boolean isOk = true;
-				for (int j=0; isOk && j<currentPred.getParams().size(); j++) {
-					Parameter real = pred.getParams().get(j);
-					Parameter expected = currentPred.getParams().get(j);
-					
-					/* Makes sure that this is exactly the parameter to be instantiated */
-					if (!real.getValue().startsWith("_") && 
-							!real.getValue().equals(expected.getValue())) {
-						isOk = false;
-					} else if (real.getValue().startsWith("_") && 
-							real.getName().equals(expected.getName())) {
-						/* 
-						 * If a parameter is not instantiated (starts with _) and I
-						 * found an instance in the state, translate it.
-						 */
-						changeIndex = j;
-					}
-				}
-				if (isOk && changeIndex != -1) {
-					stack.translateParameters(pred.getParams().get(changeIndex).getValue(), 
-							currentPred.getParams().get(changeIndex).getValue());
-					pred.getParams().get(changeIndex).setValue(
-							currentPred.getParams().get(changeIndex).getValue());
-					changed = true;
+			boolean isOk = true;
+			for (int j=0; isOk && j<currentPred.getParams().size(); j++) {
+				Parameter real = pred.getParams().get(j);
+				Parameter expected = currentPred.getParams().get(j);
+				
+				/* Makes sure that this is exactly the parameter to be instantiated */
+				if (real.isInstantiated() && 
+						real.getValueId() != expected.getValueId()) {
+					isOk = false;
+				} else if (!real.isInstantiated() && 
+						real.getNameId() == expected.getNameId()) {
+					/* 
+					 * If a parameter is not instantiated (starts with _) and I
+					 * found an instance in the state, translate it.
+					 */
+					changeIndex = j;
 				}
 			}
+			if (isOk && changeIndex != -1) {
+				/* The popped predicate refers to the same variable, so it is also bound */
+				long start = now();
+				stack.translateParameters(pred.getParams().get(changeIndex), 
+						currentPred.getParams().get(changeIndex));
+				timed(Phase.TRANSLATE_PARAMETERS, start);
+				listeners.instantiated(pred);
+				changed = true;
+			}
 		}
 	}
+
 	
 	/**
 	 * Writes logging information in the specified output. It shows the
 	 * step of the problem, the current state and a representation 
-	 * of the stack in that step.
+	 * of the stack in that step. Only written with the FULL level.
 	 */
 	public void logStack() {
-		logOutput.println("Iteration: " + iteration);
-		logOutput.println("\nCurrent state:");
-		String state = currentState.toString();
-		int pos = 0;
-		while (pos < state.length()) {
-			String part = state.substring(pos, Math.min(pos+80, state.length()));
-			logOutput.println(part);
-			
-			pos += 80;
+		if (traceLevel == TraceLevel.FULL) {
+			long start = now();
+			trace.iteration(iteration, currentState, stack);
+			timed(Phase.TRACE, start);
 		}
-		logOutput.println("\nStack:");
-		logOutput.println(stack.toString());
-		logOutput.println("-----");
 	}
 	
+	/**
+	 * Returns the current time in nanoseconds if the phases are being
+	 * timed, so nothing is measured without listeners.
+	 */
+	private long now() {
+		return timing ? System.nanoTime() : 0L;
+	}
+	
+	/**
+	 * Notifies the listeners of the time spent in a phase since start.
+	 */
+	private void timed(Phase phase, long start) {
+		if (timing) {
+			listeners.timed(phase, System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Writes the plan found, with the PLAN level or above.
+	 */
 	public void logPlan() {
-		logOutput.println("Plan: ");
-		for (Operator op : plan) {
-			logOutput.println(op.toString());
+		if (traceLevel.includes(TraceLevel.PLAN)) {
+			trace.println("Plan: ");
+			for (Operator op : plan) {
+				trace.println(op.toString());
+			}
+			trace.println("");
+			flushLog();
 		}
-		logOutput.println();
 	}
 	
+	/**
+	 * Writes the fluents of the current state, like the number of steps,
+	 * the execution time and the number of iterations, with the SUMMARY
+	 * level or above.
+	 */
 	public void logSteps() {
-		for (Predicate pred : currentState.getPredicates()) {
-			if (pred.getName().equals("Steps")) {
-				logOutput.println("Steps: " + pred.getParams().get(0).getValue());
-				break;
+		if (traceLevel.includes(TraceLevel.SUMMARY)) {
+			for (Map.Entry<String, Long> fluent : currentState.getFluents().entrySet()) {
+				trace.println(fluent.getKey() + ": " + fluent.getValue());
 			}
+			trace.println("Execution time: " + time + " ms");
+			trace.println("Number of iterations: " + iteration);
+			flushLog();
+		}
+	}
+	
+	/**
+	 * Waits until everything logged has been written, so it is not lost
+	 * if the log is never closed.
+	 */
+	private void flushLog() {
+		if (traceLevel != TraceLevel.OFF) {
+			trace.flush();
 		}
-		logOutput.println("Execution time: " + time + " ms");
-		logOutput.println("Number of iterations: " + iteration);
+	}
+	
+	/**
+	 * Waits until the whole log has been written and closes it.
+	 */
+	public void closeLog() {
+		if (trace != null) {
+			trace.close();
+		}
+	}
+	
+	
+	/**
+	 * Registers a listener that is notified of what the planner does.
+	 */
+	public void addListener(PlannerListener listener) {
+		listeners.add(listener);
+		timing = true;
+	}
+	
+	public void removeListener(PlannerListener listener) {
+		listeners.remove(listener);
+		timing = !listeners.isEmpty();
 	}
 	
 	
 	/* Getters and setters */
 	
+	/**
+	 * Makes the planner run in backtracking mode, with at most maxDepth
+	 * goals being achieved one inside another, and at most maxNodes iterations.
+	 */
+	public void setBacktracking(int maxDepth, int maxNodes) {
+		backtracking = true;
+		this.maxDepth = maxDepth;
+		this.maxNodes = maxNodes;
+	}
+	
+	public boolean isBacktracking() {
+		return backtracking;
+	}
+	
+	/**
+	 * Returns the problem grounded by the builder, or null if it
+	 * was not grounded.
+	 */
+	public GroundProblem getGroundProblem() {
+		return groundProblem;
+	}
+	
+	public void setGroundProblem(GroundProblem groundProblem) {
+		this.groundProblem = groundProblem;
+	}
+	
 	public List<Predicate> getAvailablePredicates() {
 		return availablePredicates;
 	}
@@ -255,6 +845,7 @@ public class LinearPlanner {
 
 	public void setAvailableOperators(List<Operator> availableOperators) {
 		this.availableOperators = availableOperators;
+		achievers = new AchieverIndex(availableOperators);
 	}
 	
 	public List<Operator> getPlan() {
@@ -263,6 +854,7 @@ public class LinearPlanner {
 	
 	public void setPlan(List<Operator> plan) {
 		this.plan = plan;
+		tentative = -1;
 	}
 	
 	public State getCurrentState() {
@@ -281,6 +873,25 @@ public class LinearPlanner {
 		this.finalState = finalState;
 	}
 	
+	public Intelligence getIntelligence() {
+		return intelligence;
+	}
+	
+	public int getIteration() {
+		return iteration;
+	}
+	
+	/**
+	 * Returns the execution time of the last plan, in milliseconds.
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	public TraceSink getTrace() {
+		return trace;
+	}
+	
 	public PlannerStack getStack() {
 		return stack;
 	}
@@ -289,4 +900,201 @@ public class LinearPlanner {
 		this.stack = stack;
 	}
 	
+	
+	/**
+	 * A choice point of the backtracking mode: the predicate being achieved,
+	 * its alternatives (instances from the state or operators that add it),
+	 * the next one to take, and the point to roll back to before taking it.
+	 */
+	private static class ChoicePoint {
+		
+		private int mark;
+		private int goalsMark;
+		private int planSize;
+		private Predicate pred;
+		private List<?> alternatives;
+		private int next;
+		
+		private ChoicePoint(int mark, int goalsMark, int planSize, Predicate pred, List<?> alternatives) {
+			this.mark = mark;
+			this.goalsMark = goalsMark;
+			this.planSize = planSize;
+			this.pred = pred;
+			this.alternatives = alternatives;
+			next = 0;
+		}
+		
+	}
+	
+	/**
+	 * The states reached by the plan of the current branch in backtracking
+	 * mode, one after every operator applied, as their Zobrist hashes. They
+	 * are forgotten when the operators are undone, so only the states of
+	 * the branch count as repeated.
+	 */
+	private static class BranchStates {
+		
+		private VisitedStates visited;
+		private long[] hashes;
+		private int size;
+		private int start;
+		
+		/**
+		 * Starts a branch from a state, with the operators of the plan
+		 * from start on.
+		 */
+		private BranchStates(State state, int start) {
+			visited = new VisitedStates();
+			visited.visit(state);
+			hashes = new long[64];
+			size = 0;
+			this.start = start;
+		}
+		
+		/**
+		 * Registers the state reached by the last operator of the plan.
+		 * Returns false, without registering it, if it was already reached.
+		 */
+		private boolean reach(State state) {
+			long hash = state.getZobristHash();
+			if (!visited.add(hash)) {
+				return false;
+			}
+			if (size == hashes.length) {
+				hashes = Arrays.copyOf(hashes, size * 2);
+			}
+			hashes[size++] = hash;
+			return true;
+		}
+		
+		/**
+		 * Forgets the states reached by the operators undone, once the plan
+		 * has been cut to planSize operators.
+		 */
+		private void truncate(int planSize) {
+			while (size > planSize - start) {
+				visited.remove(hashes[--size]);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Facts and goals injected together into the planner.
+	 */
+	private static class Injection {
+		
+		private List<Predicate> facts;
+		private List<Predicate> goals;
+		
+		private Injection(List<Predicate> facts, List<Predicate> goals) {
+			this.facts = facts;
+			this.goals = goals;
+		}
+		
+	}
+	
+	/**
+	 * The multiset of goals being achieved at a moment, that is, the goals
+	 * of the operators in the stack. It follows the operators pushed and
+	 * popped, also when they are undone, so checking whether a goal is
+	 * already being achieved takes constant time.
+	 * 
+	 * The goal of an operator is kept while a rollback could stack it
+	 * again: it is forgotten when the operator is popped with no choice
+	 * point open, or when a backtrack discards the branch that selected it.
+	 */
+	private static class ActiveGoals implements ChangeListener {
+		
+		/* Goal of every operator selected, as its name and values */
+		private Map<Operator, List<Integer>> goalOf;
+		private Map<List<Integer>, Integer> counts;
+		private int size;
+		
+		/* Operators in the order they were selected, to forget them on backtracks */
+		private List<Operator> selected;
+		private Deque<ChoicePoint> choices;
+		
+		private ActiveGoals(Deque<ChoicePoint> choices) {
+			goalOf = new IdentityHashMap<>();
+			counts = new HashMap<>();
+			size = 0;
+			selected = new ArrayList<>();
+			this.choices = choices;
+		}
+		
+		/**
+		 * Indicates the goal achieved by an operator about to be pushed.
+		 */
+		private void achieving(Operator op, Predicate goal) {
+			goalOf.put(op, key(goal));
+			selected.add(op);
+		}
+		
+		/**
+		 * Returns a mark of the operators selected so far.
+		 */
+		private int mark() {
+			return selected.size();
+		}
+		
+		/**
+		 * Forgets the goals of the operators selected since a mark, whose
+		 * branch has been undone, so they can never be stacked again.
+		 */
+		private void rollbackTo(int mark) {
+			while (selected.size() > mark) {
+				goalOf.remove(selected.remove(selected.size() - 1));
+			}
+		}
+		
+		private boolean contains(Predicate goal) {
+			return counts.containsKey(key(goal));
+		}
+		
+		private int size() {
+			return size;
+		}
+		
+		@Override
+		public void pushed(Stackable elem) {
+			List<Integer> goal = goalOf.get(elem);
+			if (goal != null) {
+				Integer count = counts.get(goal);
+				counts.put(goal, (count == null) ? 1 : count + 1);
+				size++;
+			}
+		}
+		
+		@Override
+		public void popped(Stackable elem) {
+			List<Integer> goal = goalOf.get(elem);
+			if (goal != null) {
+				int count = counts.get(goal);
+				if (count == 1) {
+					counts.remove(goal);
+				} else {
+					counts.put(goal, count - 1);
+				}
+				size--;
+				
+				/* Without choice points, nothing can stack the operator again */
+				if (choices.isEmpty()) {
+					goalOf.remove(elem);
+					selected.clear();
+				}
+			}
+		}
+		
+		private static List<Integer> key(Predicate goal) {
+			List<Integer> key = new ArrayList<>(goal.getParams().size() + 1);
+			key.add(goal.getNameId());
+			for (Parameter p : goal.getParams()) {
+				key.add(p.getValueId());
+			}
+			return key;
+		}
+		
+	}
+	
 }
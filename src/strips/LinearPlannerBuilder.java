@@ -3,7 +3,9 @@ package strips;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 
@@ -30,10 +32,33 @@ public class LinearPlannerBuilder {
 	private State finalState;
 	private Intelligence intelligence;
 	private PrintStream logOutput;
+	private TraceLevel traceLevel;
+	private TraceSink traceSink;
+	private int maxDepth;
+	private int maxNodes;
+	private boolean grounding;
+	private List<PlannerListener> listeners;
 	
 	public LinearPlannerBuilder() {
 		availablePredicates = new ArrayList<Predicate>();
 		availableOperators = new ArrayList<Operator>();
+		listeners = new ArrayList<PlannerListener>();
+		traceLevel = TraceLevel.FULL;
+	}
+	
+	/**
+	 * Creates a builder with the same predicates, operators, heuristics and
+	 * options as another one, but without its states and log. It allows
+	 * building planners for many problems from a domain defined once.
+	 */
+	public LinearPlannerBuilder(LinearPlannerBuilder domain) {
+		this();
+		availablePredicates.addAll(domain.availablePredicates);
+		availableOperators.addAll(domain.availableOperators);
+		intelligence = domain.intelligence;
+		maxDepth = domain.maxDepth;
+		maxNodes = domain.maxNodes;
+		grounding = domain.grounding;
 	}
 	
 	/**
@@ -70,23 +95,123 @@ public class LinearPlannerBuilder {
 		this.intelligence = intelligence;
 	}
 	
+	/**
+	 * Indicates where the log is written. It is written in a background
+	 * thread, with the level indicated (FULL by default).
+	 */
 	public void setLogOutput(PrintStream logOutput) {
 		this.logOutput = logOutput;
 	}
 	
+	public void setTraceLevel(TraceLevel traceLevel) {
+		this.traceLevel = traceLevel;
+	}
+	
+	/**
+	 * Indicates a sink for the log, instead of an output. It has 
+	 * preference over the log output and the trace level.
+	 */
+	public void setTraceSink(TraceSink traceSink) {
+		this.traceSink = traceSink;
+	}
+	
+	/**
+	 * Makes the planner run in backtracking mode, with at most maxDepth goals
+	 * being achieved one inside another, and at most maxNodes iterations.
+	 */
+	public void setBacktracking(int maxDepth, int maxNodes) {
+		this.maxDepth = maxDepth;
+		this.maxNodes = maxNodes;
+	}
+	
+	/**
+	 * Makes the builder ground the problem before building the planner,
+	 * pruning the operators that cannot be applied from the initial state.
+	 * The planner then only tries, for every goal, the operators with a
+	 * ground action that adds it.
+	 */
+	public void setGrounding(boolean grounding) {
+		this.grounding = grounding;
+	}
+	
+	/**
+	 * Adds a listener to be registered in the planner built, like some
+	 * PlannerMetrics. Listeners are not copied to other builders.
+	 */
+	public void addListener(PlannerListener listener) {
+		listeners.add(listener);
+	}
+	
 	/**
 	 * Returns the constructed LinearPlanner, from the predicates, operators
 	 * and initial and final state specified to the builder. Or throws an exception
 	 * if the problem is badly designed.
+	 * 
+	 * The index of achievers of the operators is compiled here, once for the
+	 * whole execution of the planner. If grounding is enabled, the problem is
+	 * grounded too, and the planner only uses the operators with some ground
+	 * action reachable from the initial state, and for every goal the ones
+	 * with a ground action that adds it.
 	 */
 	public LinearPlanner build() throws FileNotFoundException, PlannerBuilderException {
 		if (!isBadlyDesigned()) {
-			return new LinearPlanner(availablePredicates, availableOperators,
-					initialState, finalState, intelligence, logOutput);
+			List<Operator> operators = availableOperators;
+			GroundProblem ground = null;
+			if (grounding) {
+				ground = new Grounder(availableOperators, initialState, finalState).ground();
+				if (!ground.isSolvable()) {
+					throw new PlannerBuilderException("Unreachable goals: " 
+							+ ground.getUnreachableGoals());
+				}
+				operators = groundedOperators(ground);
+			}
+			
+			AchieverIndex achievers = new AchieverIndex(operators);
+			LinearPlanner planner = new LinearPlanner(availablePredicates, operators, 
+					achievers, initialState, finalState, intelligence, createTraceSink());
+			planner.setGroundProblem(ground);
+			if (maxNodes > 0) {
+				planner.setBacktracking(maxDepth, maxNodes);
+			}
+			for (PlannerListener listener : listeners) {
+				planner.addListener(listener);
+			}
+			return planner;
 		} else throw new PlannerBuilderException();
 		
 	}
 
+	/**
+	 * Returns the available operators with some action in a ground problem,
+	 * in the same order of priority.
+	 */
+	private List<Operator> groundedOperators(GroundProblem ground) {
+		Set<Integer> schemas = new HashSet<>();
+		for (GroundAction action : ground.getActions()) {
+			schemas.add(action.getOperator().getSchema().getId());
+		}
+		
+		List<Operator> operators = new ArrayList<>();
+		for (Operator op : availableOperators) {
+			if (schemas.contains(op.getSchema().getId())) {
+				operators.add(op);
+			}
+		}
+		return operators;
+	}
+
+	/**
+	 * Returns the sink for the log of the planner, or null if nothing
+	 * has to be logged.
+	 */
+	private TraceSink createTraceSink() {
+		if (traceSink != null) {
+			return traceSink;
+		} else if (logOutput != null && traceLevel != TraceLevel.OFF) {
+			return new AsyncTraceSink(logOutput, traceLevel);
+		} else return null;
+	}
+	
 	/**
 	 * Checks if there is any problem with the LinearPlanner indicated.
 	 */
@@ -0,0 +1,146 @@
+package strips;
+
+import strips.PlannerListener.Phase;
+import strips.PlannerMetrics.Counter;
+
+/**
+ *
+ * A MetricsSnapshot is a copy of the PlannerMetrics at a moment: the
+ * counters, the nanoseconds spent and the calls to every phase, the
+ * maximum depth of the stack, and the total time and number of plans
+ * executed. It never changes, so it can be kept and shared freely.
+ *
+ * Snapshots of several runs are aggregated by adding them up, with the
+ * largest of their maximum depths. They can be written as text, one
+ * metric per line, or as a JSON object.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class MetricsSnapshot {
+
+	private long[] counters;
+	private long[] nanos;
+	private long[] calls;
+	private int maxDepth;
+	private long totalNanos;
+	private int runs;
+
+	MetricsSnapshot(long[] counters, long[] nanos, long[] calls, int maxDepth,
+			long totalNanos, int runs) {
+		this.counters = counters.clone();
+		this.nanos = nanos.clone();
+		this.calls = calls.clone();
+		this.maxDepth = maxDepth;
+		this.totalNanos = totalNanos;
+		this.runs = runs;
+	}
+
+	/**
+	 * Creates a snapshot of no runs, to start adding up others.
+	 */
+	public MetricsSnapshot() {
+		this(new long[Counter.values().length], new long[Phase.values().length],
+				new long[Phase.values().length], 0, 0L, 0);
+	}
+
+	/**
+	 * Returns the sum of this snapshot and another one.
+	 */
+	public MetricsSnapshot plus(MetricsSnapshot other) {
+		MetricsSnapshot sum = new MetricsSnapshot(counters, nanos, calls,
+				Math.max(maxDepth, other.maxDepth), totalNanos + other.totalNanos, runs + other.runs);
+		for (int i=0; i<counters.length; i++) {
+			sum.counters[i] += other.counters[i];
+		}
+		for (int i=0; i<nanos.length; i++) {
+			sum.nanos[i] += other.nanos[i];
+			sum.calls[i] += other.calls[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the snapshot as a JSON object, with the nanoseconds and
+	 * calls of every phase.
+	 */
+	public String toJson() {
+		StringBuilder s = new StringBuilder("{\"runs\":").append(runs);
+		for (Counter counter : Counter.values()) {
+			s.append(",\"").append(camelCase(counter.name())).append("\":").append(getCounter(counter));
+		}
+		s.append(",\"maxDepth\":").append(maxDepth);
+		s.append(",\"totalNs\":").append(totalNanos);
+		for (Phase phase : Phase.values()) {
+			String name = camelCase(phase.name());
+			s.append(",\"").append(name).append("Ns\":").append(getNanos(phase));
+			s.append(",\"").append(name).append("Calls\":").append(getCalls(phase));
+		}
+		return s.append('}').toString();
+	}
+
+	/**
+	 * Returns the snapshot as text, one metric per line.
+	 */
+	public String toString() {
+		StringBuilder s = new StringBuilder("Runs: " + runs + "\n");
+		for (Counter counter : Counter.values()) {
+			s.append(counter.name().toLowerCase()).append(": ").append(getCounter(counter)).append('\n');
+		}
+		s.append("max depth: ").append(maxDepth).append('\n');
+		s.append("total: ").append(totalNanos).append(" ns\n");
+		for (Phase phase : Phase.values()) {
+			s.append(phase.name().toLowerCase()).append(": ").append(getNanos(phase))
+					.append(" ns in ").append(getCalls(phase)).append(" calls\n");
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Turns a name like SELECT_OPERATOR into selectOperator.
+	 */
+	private static String camelCase(String name) {
+		StringBuilder s = new StringBuilder();
+		for (String part : name.toLowerCase().split("_")) {
+			s.append((s.length() == 0) ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1));
+		}
+		return s.toString();
+	}
+
+
+	/* Getters and setters */
+
+	public long getCounter(Counter counter) {
+		return counters[counter.ordinal()];
+	}
+
+	/**
+	 * Returns the nanoseconds spent in a phase.
+	 */
+	public long getNanos(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * Returns the number of times a phase was timed.
+	 */
+	public long getCalls(Phase phase) {
+		return calls[phase.ordinal()];
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Returns the nanoseconds spent executing plans.
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public int getRuns() {
+		return runs;
+	}
+
+}
@@ -0,0 +1,91 @@
+package strips;
+
+import java.util.function.ToLongFunction;
+
+/**
+ *
+ * A NumericEffect changes a numeric fluent of the state when an operator
+ * is applied: it increases it, decreases it or assigns it an amount. The
+ * amount may be constant, or be calculated from the operator applied, like
+ * the distance between the positions of a Move.
+ *
+ * Numeric effects belong to the schema of the operator, so they are
+ * shared by all the operators instantiated from it.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class NumericEffect {
+
+	public enum Kind {
+		INCREASE, DECREASE, ASSIGN
+	}
+
+	private Kind kind;
+	private String fluent;
+	private int fluentId;
+	private ToLongFunction<Operator> amount;
+
+	/**
+	 * Creates an effect that changes a fluent by a constant amount.
+	 */
+	public NumericEffect(Kind kind, String fluent, long amount) {
+		this(kind, fluent, op -> amount);
+	}
+
+	/**
+	 * Creates an effect that changes a fluent by an amount calculated
+	 * from the operator applied.
+	 */
+	public NumericEffect(Kind kind, String fluent, ToLongFunction<Operator> amount) {
+		this.kind = kind;
+		this.fluent = fluent;
+		fluentId = SymbolTable.current().intern(fluent);
+		this.amount = amount;
+	}
+
+	/**
+	 * Changes the fluent of a state as an operator is applied.
+	 */
+	public void apply(State state, Operator op) {
+		long value = amount.applyAsLong(op);
+		switch (kind) {
+		case INCREASE:
+			state.increaseFluent(fluentId, value);
+			break;
+		case DECREASE:
+			state.increaseFluent(fluentId, -value);
+			break;
+		case ASSIGN:
+			state.setFluent(fluentId, value);
+			break;
+		}
+	}
+
+	/**
+	 * Returns the amount of the effect when an operator is applied.
+	 */
+	public long getAmount(Operator op) {
+		return amount.applyAsLong(op);
+	}
+
+
+	/* Getters and setters */
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getFluent() {
+		return fluent;
+	}
+
+	public int getFluentId() {
+		return fluentId;
+	}
+
+	public String toString() {
+		return kind.toString().toLowerCase() + " " + fluent;
+	}
+
+}
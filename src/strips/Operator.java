@@ -1,7 +1,7 @@
 package strips;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -10,7 +10,13 @@ import java.util.List;
  * by the linear planner. It is identified by its name and it can
  * have 0 or more parameters. They may, or may not, be instantiated.
  * Every operator has three lists of predicates: the preconditions,
- * the adds and the deletes.
+ * the adds and the deletes, and may have numeric effects on the
+ * fluents of the state.
+ * 
+ * Every operator belongs to an OperatorSchema, which keeps its
+ * definition, and has one argument per variable of the schema. Its
+ * parameters and tables are resolved from the schema and share the
+ * arguments, so instantiating an argument instantiates all of them.
  * 
  * Operators can be pushed into the stack of goals used by the
  * planning algorithm.
@@ -20,143 +26,202 @@ import java.util.List;
  */
 public class Operator extends SingleStackable {
 	
+	private OperatorSchema schema;
+	private Parameter[] args;
+	
+	/* Tables of this operator, resolved from the schema when first needed */
 	private List<Predicate> preconditions;
 	private List<Predicate> adds;
 	private List<Predicate> deletes;
+	
+	/* Whether a table was set apart from the schema, not sharing the arguments */
+	private boolean ownTables;
 
 	/**
 	 * Creates an Operator given its name, parameters, preconditions,
-	 * adds and deletes.
+	 * adds and deletes. It defines a new schema, whose variables are
+	 * the uninstantiated parameters of the operator and its tables.
 	 */
 	public Operator(String name, List<Predicate> preconditions, 
 			List<Predicate> adds, List<Predicate> deletes, Parameter... params) {
-		this.setName(name);
-		this.setParams(Arrays.asList(params));
+		this(name, preconditions, adds, deletes, Collections.<NumericEffect>emptyList(), params);
+	}
+	
+	/**
+	 * Creates an Operator like the previous constructor, with some
+	 * numeric effects on the fluents of the state.
+	 */
+	public Operator(String name, List<Predicate> preconditions, List<Predicate> adds,
+			List<Predicate> deletes, List<NumericEffect> effects, Parameter... params) {
+		schema = new OperatorSchema(name, preconditions, adds, deletes, effects, Arrays.asList(params));
+		args = schema.newArguments();
+		setName(schema.getName(), schema.getNameId());
+		setParams(schema.params(args));
 		
-		this.preconditions = preconditions;
-		this.adds = adds;
-		this.deletes = deletes;
+		/* 
+		 * The tables are resolved now, so the definition is not changed later
+		 * when several planners use it at the same time.
+		 */
+		getPreconditions();
+		getAdds();
+		getDeletes();
 	}
 	
 	/**
-	 * Creates an operation from an existing operation. That is, creates a copy
-	 * of an existing operation with another reference.
+	 * Creates an operation from an existing operation. That is, creates
+	 * another operator of the same schema, whose arguments are copies of
+	 * the ones of the existing operation.
 	 */
 	public Operator(Operator op) {
-		/* Copies the name and parameters of the operator */
-		setName(op.getName());
-		setParams(new ArrayList<Parameter>());
-		for (Parameter p : op.getParams()) {
-			getParams().add(new Parameter(new String(p.getName()), new String(p.getValue())));
+		schema = op.schema;
+		args = new Parameter[op.args.length];
+		for (int i=0; i<args.length; i++) {
+			args[i] = new Parameter(op.args[i]);
 		}
-		
-		/* Copies the preconditions, adds and deletes tables of the operator */
-		this.preconditions = copyTable(op.getPreconditions());
-		this.adds = copyTable(op.getAdds());
-		this.deletes = copyTable(op.getDeletes());
+		setName(schema.getName(), schema.getNameId());
+		setParams(schema.params(args));
 	}
 	
 	/**
-	 * Auxiliar method for copying a table of the operator. Given a table as a list
-	 * of predicates, it returns a copy of the same table.
+	 * Creates a new operator of the same schema and class as this one,
+	 * to be instantiated. Subclasses return an operator of their own class.
 	 */
-	private List<Predicate> copyTable(List<Predicate> table) {
-		/* Copies every predicate of the table */
-		List<Predicate> copied = new ArrayList<>();
-		for (Predicate pred : table) {
-			/* Copies every parameter of the table with its old values */
-			List<Parameter> ps = new ArrayList<Parameter>();
-			for (Parameter p : pred.getParams()) {
-				ps.add(new Parameter(new String(p.getName()), new String(p.getValue())));
-			}
-			Predicate newPred = new Predicate(pred.getName(), ps);
-
-			copied.add(newPred);
-		}
-		return copied;
+	protected Operator copy() {
+		return new Operator(this);
 	}
 
 	/**
 	 * Instantiates the parameters of an operator using the predicate that
 	 * is generated by the operation in the plan. Parameters should be properly
 	 * tagged with distinctive names, so they can be translated to the operation.
+	 * 
+	 * Only the arguments of the new operator are instantiated, as its tables
+	 * are resolved from the schema and share them.
 	 */
 	public Operator instantiate(Predicate pred) {
-		Operator copiedOp = new Operator(this);
-		/* Updates parameters of operator with the ones of predicate */
-		copiedOp.setParams(updateList(pred.getParams(), copiedOp.getParams()));
-		
-		/* Updates parameters for the predicates in preconditions, adds and deletes */
-		for (Predicate prec : copiedOp.getPreconditions()) {
-			prec.setParams(updateList(pred.getParams(), prec.getParams()));
+		Operator copiedOp = copy();
+		Parameter[] args = copiedOp.args;
+		for (int i=0; i<args.length; i++) {
+			if (!isInstantiatedBy(schema.getVariable(i))) continue;
+			for (Parameter p : pred.getParams()) {
+				if (args[i].getNameId() == p.getNameId()) {
+					args[i].copyValue(p);
+				}
+			}
 		}
-		for (Predicate add : copiedOp.getAdds()) {
-			add.setParams(updateList(pred.getParams(), add.getParams()));
+		return copiedOp;
+	}
+	
+	/**
+	 * Creates a new operator of the same schema and class as this one, with
+	 * its arguments instantiated to some values, in the order of the
+	 * variables of the schema.
+	 */
+	public Operator instantiate(String... values) {
+		if (values.length != args.length) {
+			throw new IllegalArgumentException(getName() + " has " + args.length + " arguments");
 		}
-		for (Predicate del : copiedOp.getDeletes()) {
-			del.setParams(updateList(pred.getParams(), del.getParams()));
+		Operator copiedOp = copy();
+		for (int i=0; i<values.length; i++) {
+			copiedOp.args[i].setValue(values[i]);
 		}
-				
 		return copiedOp;
 	}
 	
 	/**
-	 * Updates a list of parameters with the parameters of a predicate.
+	 * Checks whether a variable of the schema takes its value from the
+	 * predicate that instantiates the operator. By default all of them do.
 	 */
-	private List<Parameter> updateList(List<Parameter> copy, List<Parameter> paste) {
-		for (int i=0; i<paste.size(); i++) {
-			for (int j=0; j<copy.size(); j++) {
-				if (paste.get(i).getName().equals(copy.get(j).getName())) {
-					paste.get(i).setValue(copy.get(j).getValue());
-				}
-			}
-		}
-		return paste;
+	protected boolean isInstantiatedBy(Parameter variable) {
+		return true;
 	}
 	
 	/**
 	 * Applies the operator to a state, that is, adds and deletes
 	 * the predicates specified at the adds and deletes tables,
-	 * respectively.
+	 * respectively, and changes its fluents with the numeric effects.
 	 */
 	public void apply(State state) {
-		state.removePredicates(deletes);
-		state.getPredicates().addAll(adds);
+		state.removePredicates(getDeletes());
+		state.addPredicates(getAdds());
+		for (NumericEffect effect : schema.getEffects()) {
+			effect.apply(state, this);
+		}
 	}
 	
 	/* Getters and setters */
+	
+	public OperatorSchema getSchema() {
+		return schema;
+	}
+	
+	/**
+	 * Returns the arguments of the operator, one per variable of its schema.
+	 */
+	public Parameter[] getArguments() {
+		return args;
+	}
+	
+	public List<NumericEffect> getEffects() {
+		return schema.getEffects();
+	}
+	
+	/**
+	 * Checks whether any table of the operator has been set apart from
+	 * the schema, so its parameters are not only the arguments.
+	 */
+	boolean hasOwnTables() {
+		return ownTables;
+	}
 
 	public List<Predicate> getPreconditions() {
+		if (preconditions == null) {
+			preconditions = schema.preconditions(args);
+		}
 		return preconditions;
 	}
 
+	/*
+	 * The setters replace the tables of this operator only,
+	 * the schema and the operators instantiated from it are not changed.
+	 */
+	
 	public void setPreconditions(List<Predicate> preconditions) {
 		this.preconditions = preconditions;
+		ownTables = true;
 	}
 
 	public List<Predicate> getAdds() {
+		if (adds == null) {
+			adds = schema.adds(args);
+		}
 		return adds;
 	}
 
 	public void setAdds(List<Predicate> adds) {
 		this.adds = adds;
+		ownTables = true;
 	}
 
 	public List<Predicate> getDeletes() {
+		if (deletes == null) {
+			deletes = schema.deletes(args);
+		}
 		return deletes;
 	}
 
 	public void setDeletes(List<Predicate> deletes) {
 		this.deletes = deletes;
+		ownTables = true;
 	}
 	
 	public String toString() {
-		String s = getName() + "(";
+		StringBuilder s = new StringBuilder(getName()).append('(');
 		for (int i=0; i<getParams().size(); i++) {
-			s += getParams().get(i).toString();
-			s += (i < getParams().size()-1) ? ", " : ")";
+			s.append(getParams().get(i).getValue());
+			s.append((i < getParams().size()-1) ? ", " : ")");
 		}
-		return s;
+		return s.toString();
 	}
 	
 }
@@ -0,0 +1,231 @@
+package strips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * An OperatorSchema is the immutable definition of an operator: its
+ * name, its parameters, its preconditions, adds and deletes tables, and
+ * its numeric effects, with the uninstantiated parameters numbered as the
+ * variables of the schema.
+ *
+ * An operator used by the planner is a schema plus its arguments, one
+ * parameter per variable. The predicates of its tables are resolved
+ * from the schema and share those arguments, so instantiating an
+ * operator only creates one parameter per variable instead of copying
+ * every parameter of every table.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class OperatorSchema {
+
+	/* Number of schemas created, used as identifier of the next one */
+	private static final AtomicInteger created = new AtomicInteger();
+
+	private int id;
+	private String name;
+	private int nameId;
+
+	/* The first parameter found for every variable, by order of appearance */
+	private Parameter[] variables;
+
+	/* Parameters that are instantiated in the definition of the operator */
+	private Parameter[] constants;
+
+	private int[] params;
+	private Template[] preconditions;
+	private Template[] adds;
+	private Template[] deletes;
+	private List<NumericEffect> effects;
+
+	/**
+	 * Creates the schema of an operator given its name, preconditions,
+	 * adds, deletes and parameters. The uninstantiated parameters with
+	 * the same value are the same variable.
+	 */
+	public OperatorSchema(String name, List<Predicate> preconditions,
+			List<Predicate> adds, List<Predicate> deletes, List<Parameter> params) {
+		this(name, preconditions, adds, deletes, Collections.<NumericEffect>emptyList(), params);
+	}
+
+	/**
+	 * Creates the schema of an operator like the previous constructor,
+	 * with some numeric effects.
+	 */
+	public OperatorSchema(String name, List<Predicate> preconditions, List<Predicate> adds,
+			List<Predicate> deletes, List<NumericEffect> effects, List<Parameter> params) {
+		id = created.getAndIncrement();
+		this.name = name;
+		nameId = SymbolTable.current().intern(name);
+
+		Map<Integer, Integer> numbers = new LinkedHashMap<>();
+		List<Parameter> vars = new ArrayList<>();
+		List<Parameter> consts = new ArrayList<>();
+		this.params = compile(params, numbers, vars, consts);
+		this.preconditions = compileTable(preconditions, numbers, vars, consts);
+		this.adds = compileTable(adds, numbers, vars, consts);
+		this.deletes = compileTable(deletes, numbers, vars, consts);
+		this.effects = Collections.unmodifiableList(new ArrayList<>(effects));
+
+		variables = vars.toArray(new Parameter[vars.size()]);
+		this.constants = consts.toArray(new Parameter[consts.size()]);
+	}
+
+	/**
+	 * Compiles a table into the templates of its predicates.
+	 */
+	private Template[] compileTable(List<Predicate> table, Map<Integer, Integer> numbers,
+			List<Parameter> vars, List<Parameter> consts) {
+		Template[] templates = new Template[table.size()];
+		for (int i=0; i<table.size(); i++) {
+			Predicate pred = table.get(i);
+			templates[i] = new Template(pred.getName(), pred.getNameId(),
+					compile(pred.getParams(), numbers, vars, consts));
+		}
+		return templates;
+	}
+
+	/**
+	 * Compiles a list of parameters into references: the number of its
+	 * variable for uninstantiated parameters, and -(i+1) for the i-th
+	 * constant otherwise.
+	 */
+	private int[] compile(List<Parameter> ps, Map<Integer, Integer> numbers,
+			List<Parameter> vars, List<Parameter> consts) {
+		int[] refs = new int[ps.size()];
+		for (int i=0; i<ps.size(); i++) {
+			Parameter p = ps.get(i);
+			if (p.isInstantiated()) {
+				consts.add(new Parameter(p));
+				refs[i] = -consts.size();
+			} else {
+				Integer number = numbers.get(p.getValueId());
+				if (number == null) {
+					number = vars.size();
+					numbers.put(p.getValueId(), number);
+					vars.add(new Parameter(p));
+				}
+				refs[i] = number;
+			}
+		}
+		return refs;
+	}
+
+	/**
+	 * Creates the arguments of a new operator of this schema, all of
+	 * them uninstantiated.
+	 */
+	public Parameter[] newArguments() {
+		Parameter[] args = new Parameter[variables.length];
+		for (int i=0; i<args.length; i++) {
+			args[i] = new Parameter(variables[i]);
+		}
+		return args;
+	}
+
+	/**
+	 * Returns the variable of the schema for a given argument, as it
+	 * appears in the definition of the operator (like _o2).
+	 */
+	public Parameter getVariable(int i) {
+		return variables[i];
+	}
+
+	/**
+	 * Returns the number of variables of the schema.
+	 */
+	public int getArity() {
+		return variables.length;
+	}
+
+	/**
+	 * Resolves the parameters of the operator for some arguments.
+	 */
+	List<Parameter> params(Parameter[] args) {
+		return resolve(params, args);
+	}
+
+	/**
+	 * Resolves the preconditions table for some arguments.
+	 */
+	List<Predicate> preconditions(Parameter[] args) {
+		return resolve(preconditions, args);
+	}
+
+	/**
+	 * Resolves the adds table for some arguments.
+	 */
+	List<Predicate> adds(Parameter[] args) {
+		return resolve(adds, args);
+	}
+
+	/**
+	 * Resolves the deletes table for some arguments.
+	 */
+	List<Predicate> deletes(Parameter[] args) {
+		return resolve(deletes, args);
+	}
+
+	private List<Predicate> resolve(Template[] table, Parameter[] args) {
+		Predicate[] preds = new Predicate[table.length];
+		for (int i=0; i<table.length; i++) {
+			preds[i] = new Predicate(table[i].name, table[i].nameId,
+					resolve(table[i].refs, args));
+		}
+		return Arrays.asList(preds);
+	}
+
+	private List<Parameter> resolve(int[] refs, Parameter[] args) {
+		Parameter[] ps = new Parameter[refs.length];
+		for (int i=0; i<refs.length; i++) {
+			ps[i] = (refs[i] >= 0) ? args[refs[i]] : constants[-refs[i]-1];
+		}
+		return Arrays.asList(ps);
+	}
+
+
+	/* Getters and setters */
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getNameId() {
+		return nameId;
+	}
+
+	public List<NumericEffect> getEffects() {
+		return effects;
+	}
+
+
+	/**
+	 * A predicate of a table of the schema, with its parameters as
+	 * references to variables or constants.
+	 */
+	private static class Template {
+
+		private String name;
+		private int nameId;
+		private int[] refs;
+
+		private Template(String name, int nameId, int[] refs) {
+			this.name = name;
+			this.nameId = nameId;
+			this.refs = refs;
+		}
+
+	}
+
+}
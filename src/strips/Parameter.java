@@ -11,6 +11,12 @@ package strips;
  * or not. In the latter case, its value starts with a _ symbol. That
  * means that a parameter may not have real values starting with _.
  * 
+ * Both the name and the value are interned in the SymbolTable, so
+ * parameters are compared by their identifiers.
+ * 
+ * Once stacked, an uninstantiated parameter refers to a Variable, and
+ * its value is the one the variable is bound to, if any.
+ * 
  * @author Javier Beltran, Jorge Rodriguez
  *
  */
@@ -18,6 +24,10 @@ public class Parameter {
 	
 	private String name;
 	private String value;
+	private int nameId;
+	private int valueId;
+	private boolean instantiated;
+	private Variable variable;
 
 	/**
 	 * Creates a Parameter with a name and value.
@@ -26,14 +36,23 @@ public class Parameter {
 		this.setName(name);
 		this.setValue(value);
 	}
+	
+	/**
+	 * Creates a copy of an existing Parameter, reusing the
+	 * identifiers of its name and value.
+	 */
+	public Parameter(Parameter p) {
+		name = p.name;
+		nameId = p.nameId;
+		copyValue(p);
+	}
 
 	/**
 	 * Checks whether a parameter has already been
 	 * instantiated or not.
 	 */
 	public boolean isInstantiated() {
-		/* Uninstantiated parameters start with _ */
-		return !value.startsWith("_");
+		return instantiated || (variable != null && variable.isBound());
 	}
 	
 	
@@ -45,22 +64,58 @@ public class Parameter {
 
 	public void setName(String name) {
 		this.name = name;
+		nameId = SymbolTable.current().intern(name);
+	}
+	
+	public int getNameId() {
+		return nameId;
 	}
 
 	public String getValue() {
-		return value;
+		return (variable == null) ? value : variable.getValue();
 	}
 
 	public void setValue(String value) {
 		this.value = value;
+		variable = null;
+		valueId = SymbolTable.current().intern(value);
+		/* Uninstantiated parameters start with _ */
+		instantiated = !value.startsWith("_");
+	}
+	
+	public int getValueId() {
+		return (variable == null) ? valueId : variable.getValueId();
+	}
+	
+	/**
+	 * Gives this parameter the current value of another one, without
+	 * looking it up again in the SymbolTable. The parameter does not
+	 * refer to any variable after this.
+	 */
+	public void copyValue(Parameter p) {
+		value = p.getValue();
+		valueId = p.getValueId();
+		instantiated = p.isInstantiated();
+		variable = null;
+	}
+	
+	public Variable getVariable() {
+		return variable;
+	}
+	
+	/**
+	 * Makes this parameter refer to a variable, so it takes its value.
+	 */
+	void setVariable(Variable variable) {
+		this.variable = variable;
 	}
 	
 	public boolean equals(Parameter p) {
-		return name.equals(p.getName()) && value.equals(p.getValue());
+		return nameId == p.getNameId() && getValueId() == p.getValueId();
 	}
 	
 	public String toString() {
-		return value;
+		return getValue();
 	}
 	
 }
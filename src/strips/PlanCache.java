@@ -0,0 +1,440 @@
+package strips;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ *
+ * A PlanCache keeps the plans found by LinearPlanners, so a problem that
+ * has already been solved is answered by applying its plan again instead
+ * of executing the algorithm. Problems are identified by a fingerprint,
+ * a SHA-256 hash of the name of the domain, its operators, the class of
+ * the intelligence, the mode of the planner, and the current and final
+ * states, with their predicates in a canonical order. Problems that only
+ * differ in the order of their predicates share their plan.
+ *
+ * Only plans found are kept, and at most capacity of them: when the cache
+ * is full, the plan used least recently is evicted. The plans can also be
+ * appended to a file, which is read again when the cache is created, so
+ * they outlive the application. Every line of the file ends with the number
+ * of operators of its plan and a CRC-32 checksum, and the lines that do not
+ * match them, like the last one when it was not completely written, are
+ * skipped. If the file cannot be written, the cache goes on in memory only.
+ *
+ * A plan kept is only used if it still reaches the goal: it is checked on
+ * a copy of the current state first, and if some operator cannot be applied
+ * or the goal does not hold after it, the plan is forgotten and the problem
+ * solved as a miss.
+ *
+ * The cache counts its hits, misses, evictions and rejected plans, and can
+ * be shared by several threads. The plans are found outside its lock, so a
+ * problem may be solved twice if it is asked for again before it is kept.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlanCache {
+
+	/* Plans by fingerprint, as the name and arguments of every operator, in access order */
+	private LinkedHashMap<String, String[][]> plans;
+	private int capacity;
+	private Writer store;
+	private boolean failed;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long rejected;
+
+	/**
+	 * Creates a cache that keeps at most capacity plans in memory.
+	 */
+	public PlanCache(int capacity) {
+		this.capacity = capacity;
+		plans = new LinkedHashMap<String, String[][]>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String[][]> eldest) {
+				if (size() > PlanCache.this.capacity) {
+					evictions++;
+					return true;
+				} else return false;
+			}
+
+		};
+		failed = false;
+	}
+
+	/**
+	 * Creates a cache like the previous constructor, that also appends its
+	 * plans to a file. The plans already in the file are read first, the
+	 * latest ones being kept if there are more than capacity.
+	 */
+	public PlanCache(int capacity, File file) throws IOException {
+		this(capacity);
+		if (file.exists()) {
+			load(file);
+		}
+		store = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file, true), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reads the plans of a file, one per line, skipping and counting as
+	 * rejected the ones that are not well formed.
+	 */
+	private void load(File file) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!readRecord(line)) {
+					rejected++;
+				}
+			}
+		}
+		/* Loading is not counted as evictions */
+		evictions = 0;
+	}
+
+	/**
+	 * Keeps the plan of a line of the file, written by put as the fingerprint,
+	 * the number of operators, the plan and the checksum of all of them,
+	 * separated by tabs. Returns false if the line does not match them.
+	 */
+	private boolean readRecord(String line) {
+		int end = line.lastIndexOf('\t');
+		String[] fields = line.split("\t", -1);
+		if (fields.length != 4 || fields[0].length() != 64 
+				|| !fields[3].equals(checksum(line.substring(0, end)))) {
+			return false;
+		}
+
+		try {
+			String[][] ops = parse(fields[2]);
+			if (ops.length != Integer.parseInt(fields[1])) {
+				return false;
+			}
+			plans.put(fields[0], ops);
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the CRC-32 checksum of a record, in hexadecimal.
+	 */
+	private static String checksum(String record) {
+		CRC32 crc = new CRC32();
+		crc.update(record.getBytes(StandardCharsets.UTF_8));
+		return Long.toHexString(crc.getValue());
+	}
+
+	/**
+	 * Executes the plan of a planner of a domain, or applies the plan kept
+	 * for its problem. Returns the plan of the planner.
+	 */
+	public List<Operator> executePlan(String domain, LinearPlanner planner) {
+		String key = fingerprint(domain, planner);
+		List<Operator> cached = get(key, planner);
+		if (cached != null) {
+			planner.replay(cached);
+			return planner.getPlan();
+		}
+
+		int start = planner.getPlan().size();
+		List<Operator> plan = planner.executePlan();
+		put(key, plan.subList(start, plan.size()));
+		return plan;
+	}
+
+	/**
+	 * Executes the plan of a planner of a domain with limits, like the
+	 * LinearPlanner does, or applies the plan kept for its problem. Only
+	 * the plans found are kept.
+	 * 
+	 * The metrics of a plan applied from the cache are the ones of applying
+	 * it: one run with an application per operator and no iterations, since
+	 * the algorithm is not executed.
+	 */
+	public PlanResult executePlan(String domain, LinearPlanner planner, long timeout,
+			int maxIterations, CancellationToken token) {
+		String key = fingerprint(domain, planner);
+		List<Operator> cached = get(key, planner);
+		if (cached != null) {
+			PlannerMetrics metrics = new PlannerMetrics();
+			planner.addListener(metrics);
+			try {
+				planner.replay(cached);
+			} finally {
+				planner.removeListener(metrics);
+			}
+			return new PlanResult(PlanResult.Status.SOLVED, new ArrayList<>(planner.getPlan()),
+					Collections.<String>emptyList(), metrics.snapshot(), planner.getIteration(),
+					planner.getTime(), null);
+		}
+
+		int start = planner.getPlan().size();
+		PlanResult result = planner.executePlan(timeout, maxIterations, token);
+		if (result.isSolved()) {
+			put(key, result.getPlan().subList(start, result.getPlan().size()));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the fingerprint of the problem of a planner of a domain, as
+	 * a hexadecimal SHA-256 hash.
+	 */
+	public static String fingerprint(String domain, LinearPlanner planner) {
+		StringBuilder s = new StringBuilder("domain ").append(domain).append('\n');
+		for (Operator op : planner.getAvailableOperators()) {
+			s.append("operator ").append(op).append(" pre ").append(op.getPreconditions())
+				.append(" add ").append(op.getAdds()).append(" del ").append(op.getDeletes())
+				.append(" effects ").append(op.getEffects()).append('\n');
+		}
+		s.append("intelligence ").append(planner.getIntelligence().getClass().getName()).append('\n');
+		s.append("backtracking ").append(planner.isBacktracking()).append('\n');
+		s.append("initial ").append(canonical(planner.getCurrentState())).append('\n');
+		s.append("goal ").append(canonical(planner.getFinalState())).append('\n');
+
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256")
+					.digest(s.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : hash) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			/* Every Java platform has SHA-256 */
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the predicates of a state sorted, and then its fluents.
+	 */
+	private static String canonical(State state) {
+		List<String> preds = new ArrayList<>();
+		for (Predicate p : state.predicates()) {
+			preds.add(p.toString());
+		}
+		Collections.sort(preds);
+		List<String> fluents = new ArrayList<>();
+		for (Map.Entry<String, Long> fluent : state.getFluents().entrySet()) {
+			fluents.add(fluent.getKey() + "=" + fluent.getValue());
+		}
+		Collections.sort(fluents);
+		return preds + " " + fluents;
+	}
+
+	/**
+	 * Returns the operators of the plan kept for the problem of a planner,
+	 * given its fingerprint, counting the hit. Returns null, counting the
+	 * miss, if there is none or it no longer reaches the goal, in which case
+	 * it is forgotten.
+	 */
+	private List<Operator> get(String key, LinearPlanner planner) {
+		String[][] ops;
+		synchronized (this) {
+			ops = plans.get(key);
+		}
+		List<Operator> plan = (ops == null) ? null : rebuild(ops, planner);
+		if (plan != null && !reachesGoal(plan, planner)) {
+			plan = null;
+		}
+
+		synchronized (this) {
+			if (plan != null) {
+				hits++;
+			} else {
+				misses++;
+				if (ops != null && plans.remove(key, ops)) {
+					rejected++;
+				}
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Checks whether a plan can be applied to the current state of a planner,
+	 * on a copy of it, and gets to a state where the goal holds.
+	 */
+	private static boolean reachesGoal(List<Operator> plan, LinearPlanner planner) {
+		State state = new State(planner.getCurrentState().getPredicates());
+		for (Map.Entry<String, Long> fluent : planner.getCurrentState().getFluents().entrySet()) {
+			state.setFluent(fluent.getKey(), fluent.getValue());
+		}
+
+		for (Operator op : plan) {
+			for (Predicate prec : op.getPreconditions()) {
+				if (!state.contains(prec)) return false;
+			}
+			state.applyOperator(op);
+		}
+		for (Predicate goal : planner.getFinalState().predicates()) {
+			if (!state.contains(goal)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Keeps the plan of a fingerprint, appending it to the file if there is one.
+	 */
+	private synchronized void put(String key, List<Operator> plan) {
+		String[][] ops = new String[plan.size()][];
+		for (int i=0; i<ops.length; i++) {
+			Parameter[] args = plan.get(i).getArguments();
+			ops[i] = new String[args.length + 1];
+			ops[i][0] = plan.get(i).getName();
+			for (int j=0; j<args.length; j++) {
+				ops[i][j+1] = args[j].getValue();
+			}
+		}
+		plans.put(key, ops);
+
+		if (store != null && !failed) {
+			try {
+				String record = key + "\t" + ops.length + "\t" + format(ops);
+				store.write(record + "\t" + checksum(record) + "\n");
+				store.flush();
+			} catch (IOException e) {
+				failed = true;
+			}
+		}
+	}
+
+	/**
+	 * Creates the operators of a plan kept, from the operators of the planner
+	 * with the same names. Returns null if some operator is not available or
+	 * takes other arguments.
+	 */
+	private static List<Operator> rebuild(String[][] ops, LinearPlanner planner) {
+		Map<String, Operator> byName = new HashMap<>();
+		for (Operator op : planner.getAvailableOperators()) {
+			byName.putIfAbsent(op.getName(), op);
+		}
+		List<Operator> plan = new ArrayList<>(ops.length);
+		for (String[] op : ops) {
+			Operator available = byName.get(op[0]);
+			if (available == null || available.getArguments().length != op.length - 1) {
+				return null;
+			}
+			plan.add(available.instantiate(Arrays.copyOfRange(op, 1, op.length)));
+		}
+		return plan;
+	}
+
+	/**
+	 * Writes a plan kept as Name(arg,arg);Name(arg) in one line.
+	 */
+	private static String format(String[][] ops) {
+		StringBuilder s = new StringBuilder();
+		for (int i=0; i<ops.length; i++) {
+			s.append(ops[i][0]).append('(');
+			for (int j=1; j<ops[i].length; j++) {
+				s.append(ops[i][j]);
+				if (j < ops[i].length-1) s.append(',');
+			}
+			s.append(')');
+			if (i < ops.length-1) s.append(';');
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Reads a plan written by format.
+	 */
+	private static String[][] parse(String text) {
+		if (text.isEmpty()) {
+			return new String[0][];
+		}
+		String[] opStrings = text.split(";");
+		String[][] ops = new String[opStrings.length][];
+		for (int i=0; i<ops.length; i++) {
+			String[] parts = opStrings[i].replace(")", "").split("\\(", -1);
+			String[] args = parts[1].isEmpty() ? new String[0] : parts[1].split(",");
+			ops[i] = new String[args.length + 1];
+			ops[i][0] = parts[0];
+			System.arraycopy(args, 0, ops[i], 1, args.length);
+		}
+		return ops;
+	}
+
+	/**
+	 * Closes the file of the cache, if it has one.
+	 */
+	public synchronized void close() {
+		if (store != null) {
+			try {
+				store.close();
+			} catch (IOException e) {
+				failed = true;
+			}
+			store = null;
+		}
+	}
+
+	/**
+	 * Returns the metrics of the cache as a JSON object in one line.
+	 */
+	public synchronized String toJson() {
+		return "{\"hits\":" + hits + ",\"misses\":" + misses + ",\"evictions\":" + evictions
+				+ ",\"rejected\":" + rejected + ",\"size\":" + plans.size() + "}";
+	}
+
+
+	/* Getters and setters */
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of lines of the file skipped when loading it, and
+	 * of plans forgotten because they no longer reached the goal.
+	 */
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+	public synchronized int size() {
+		return plans.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+}
@@ -0,0 +1,28 @@
+package strips;
+
+/**
+ *
+ * A PlanLimitException is thrown inside the LinearPlanner when it hits
+ * one of the limits of an execution: its deadline, its maximum number of
+ * iterations, or its cancellation. It is turned into a PlanResult with
+ * that status, so it never reaches the caller.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+class PlanLimitException extends PlanningException {
+
+	private static final long serialVersionUID = 1L;
+
+	private PlanResult.Status status;
+
+	PlanLimitException(PlanResult.Status status, String message) {
+		super(message);
+		this.status = status;
+	}
+
+	PlanResult.Status getStatus() {
+		return status;
+	}
+
+}
@@ -0,0 +1,95 @@
+package strips;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ * A PlanResult is the outcome of executing a plan with limits: whether
+ * the plan was found, or why the planner stopped, with the plan found so
+ * far, the texts of the elements left in the stack (from the top to the
+ * bottom) and the metrics of the execution.
+ *
+ * Operators are never taken out of the plan once committed, so the partial
+ * plan of a planner stopped by a limit is the beginning of the plan it was
+ * building. In backtracking mode, it only has the operators committed, and
+ * not the ones of the branch being tried when it stopped.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlanResult {
+
+	public enum Status {
+		SOLVED, FAILED, DEADLINE_EXCEEDED, ITERATION_LIMIT, CANCELLED
+	}
+
+	private Status status;
+	private List<Operator> plan;
+	private List<String> stack;
+	private MetricsSnapshot metrics;
+	private int iterations;
+	private long time;
+	private String error;
+
+	/**
+	 * Creates the result of an execution, with the reason why it failed
+	 * or stopped, or null if the plan was found.
+	 */
+	public PlanResult(Status status, List<Operator> plan, List<String> stack,
+			MetricsSnapshot metrics, int iterations, long time, String error) {
+		this.status = status;
+		this.plan = Collections.unmodifiableList(plan);
+		this.stack = Collections.unmodifiableList(stack);
+		this.metrics = metrics;
+		this.iterations = iterations;
+		this.time = time;
+		this.error = error;
+	}
+
+	public boolean isSolved() {
+		return status == Status.SOLVED;
+	}
+
+
+	/* Getters and setters */
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the plan found, or its beginning if the planner stopped.
+	 */
+	public List<Operator> getPlan() {
+		return plan;
+	}
+
+	/**
+	 * Returns the texts of the elements left in the stack, from the top
+	 * to the bottom. It is empty if the plan was found.
+	 */
+	public List<String> getStack() {
+		return stack;
+	}
+
+	public MetricsSnapshot getMetrics() {
+		return metrics;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Returns the execution time, in milliseconds.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+}
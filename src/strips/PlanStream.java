@@ -0,0 +1,119 @@
+package strips;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ *
+ * A PlanStream gives the operators of a plan while the LinearPlanner is
+ * still finding the rest of it. The planner runs in its own thread, and
+ * every operator committed is passed to the thread iterating the stream,
+ * so the first operators can be executed before the plan is complete.
+ *
+ * In backtracking mode, operators are only committed once the whole plan
+ * is found, so the stream gives all of them at the end.
+ *
+ * Iterating the stream waits for the next operator. It ends when the plan
+ * is complete, or throws whatever stopped the planner, like a
+ * PlanningException or an Error of its thread, so the thread iterating
+ * never waits for a planner that is gone. A stream can be iterated only once.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlanStream implements PlannerListener, Iterable<Operator>, Runnable {
+
+	/* Put in the queue after the last operator */
+	private static final Object END = new Object();
+
+	private LinearPlanner planner;
+	private BlockingQueue<Object> queue;
+
+	/**
+	 * Creates a stream of the plan of a planner, which is executed when
+	 * the stream is run.
+	 */
+	public PlanStream(LinearPlanner planner) {
+		this.planner = planner;
+		queue = new LinkedBlockingQueue<>();
+	}
+
+	/**
+	 * Executes the plan of a planner in a new thread, returning the stream
+	 * of its operators.
+	 */
+	public static PlanStream start(LinearPlanner planner) {
+		PlanStream stream = new PlanStream(planner);
+		Thread thread = new Thread(stream, "planner-stream");
+		thread.setDaemon(true);
+		thread.start();
+		return stream;
+	}
+
+	/**
+	 * Executes the plan, passing its operators to the stream, and then
+	 * ends the stream or passes the error that stopped it, even an Error.
+	 */
+	@Override
+	public void run() {
+		planner.addListener(this);
+		try {
+			planner.executePlan();
+			queue.add(END);
+		} catch (Throwable e) {
+			queue.add(e);
+		} finally {
+			planner.removeListener(this);
+		}
+	}
+
+	@Override
+	public void committed(Operator op) {
+		queue.add(op);
+	}
+
+	/**
+	 * Returns an iterator that waits for every operator of the plan.
+	 */
+	@Override
+	public Iterator<Operator> iterator() {
+		return new Iterator<Operator>() {
+
+			private Object next;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = queue.take();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new PlanningException("Interrupted while waiting for the plan");
+					}
+				}
+				if (next instanceof RuntimeException) {
+					throw (RuntimeException) next;
+				} else if (next instanceof Error) {
+					throw (Error) next;
+				} else if (next instanceof Throwable) {
+					throw new PlanningException("The planner failed: " + next);
+				}
+				return next != END;
+			}
+
+			@Override
+			public Operator next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Operator op = (Operator) next;
+				next = null;
+				return op;
+			}
+
+		};
+	}
+
+}
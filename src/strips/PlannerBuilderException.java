@@ -13,5 +13,13 @@ package strips;
 public class PlannerBuilderException extends Exception {
 
 	private static final long serialVersionUID = 1L;
+	
+	public PlannerBuilderException() {
+		super();
+	}
+	
+	public PlannerBuilderException(String message) {
+		super(message);
+	}
 
 }
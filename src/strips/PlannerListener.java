@@ -0,0 +1,77 @@
+package strips;
+
+/**
+ *
+ * A PlannerListener is notified of what the LinearPlanner does while it
+ * executes: the start and end of every plan, every iteration, the operators
+ * selected, applied and committed, the predicates instantiated from the
+ * state, and the backtracks. Changes of the stack can be followed too,
+ * registering a ChangeListener in the stack of the planner when it starts.
+ *
+ * When the planner has listeners, it also measures the time spent in some
+ * of its phases, in nanoseconds. Instantiating includes translating the
+ * parameters of the stack, which is also measured on its own. Without
+ * listeners, nothing is measured.
+ *
+ * All the methods do nothing by default, so a listener only has to
+ * implement the events it is interested in.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public interface PlannerListener {
+
+	public enum Phase {
+		SELECT_OPERATOR, INSTANTIATE, TRANSLATE_PARAMETERS, TRACE
+	}
+
+	/**
+	 * The planner is about to execute a plan.
+	 */
+	public default void started(LinearPlanner planner) {}
+
+	/**
+	 * An element has been unstacked in a new iteration.
+	 */
+	public default void iteration(int iteration, Stackable elem) {}
+
+	/**
+	 * An operator has been selected and instantiated for a goal.
+	 */
+	public default void selected(Predicate goal, Operator op) {}
+
+	/**
+	 * An operator has been applied to the state and added to the plan.
+	 */
+	public default void applied(Operator op) {}
+
+	/**
+	 * An operator is a final part of the plan, that will not be undone, so
+	 * it can be executed already. They are committed in the order of the
+	 * plan: as they are applied, or at the end of the plan in backtracking
+	 * mode, where applied operators may be undone.
+	 */
+	public default void committed(Operator op) {}
+
+	/**
+	 * A predicate has been instantiated with a predicate of the state.
+	 */
+	public default void instantiated(Predicate pred) {}
+
+	/**
+	 * The planner has undone its changes back to a choice point, in
+	 * backtracking mode.
+	 */
+	public default void backtracked() {}
+
+	/**
+	 * The planner has spent some nanoseconds in a phase.
+	 */
+	public default void timed(Phase phase, long nanos) {}
+
+	/**
+	 * The planner has finished executing a plan, found or not.
+	 */
+	public default void finished(LinearPlanner planner) {}
+
+}
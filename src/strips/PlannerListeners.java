@@ -0,0 +1,92 @@
+package strips;
+
+import java.util.Arrays;
+
+/**
+ *
+ * The PlannerListeners are the listeners registered in a LinearPlanner.
+ * Every event is passed on to all of them, in the order they were
+ * registered. When there are no listeners, notifying an event costs
+ * nothing more than checking an empty array.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+class PlannerListeners implements PlannerListener {
+
+	private PlannerListener[] listeners;
+
+	PlannerListeners() {
+		listeners = new PlannerListener[0];
+	}
+
+	void add(PlannerListener listener) {
+		listeners = Arrays.copyOf(listeners, listeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+	}
+
+	void remove(PlannerListener listener) {
+		for (int i=0; i<listeners.length; i++) {
+			if (listeners[i] == listener) {
+				PlannerListener[] remaining = new PlannerListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, remaining, 0, i);
+				System.arraycopy(listeners, i+1, remaining, i, listeners.length - i - 1);
+				listeners = remaining;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether there is any listener, so the phases have to be timed.
+	 */
+	boolean isEmpty() {
+		return listeners.length == 0;
+	}
+
+	@Override
+	public void started(LinearPlanner planner) {
+		for (PlannerListener l : listeners) l.started(planner);
+	}
+
+	@Override
+	public void iteration(int iteration, Stackable elem) {
+		for (PlannerListener l : listeners) l.iteration(iteration, elem);
+	}
+
+	@Override
+	public void selected(Predicate goal, Operator op) {
+		for (PlannerListener l : listeners) l.selected(goal, op);
+	}
+
+	@Override
+	public void applied(Operator op) {
+		for (PlannerListener l : listeners) l.applied(op);
+	}
+
+	@Override
+	public void committed(Operator op) {
+		for (PlannerListener l : listeners) l.committed(op);
+	}
+
+	@Override
+	public void instantiated(Predicate pred) {
+		for (PlannerListener l : listeners) l.instantiated(pred);
+	}
+
+	@Override
+	public void backtracked() {
+		for (PlannerListener l : listeners) l.backtracked();
+	}
+
+	@Override
+	public void timed(Phase phase, long nanos) {
+		for (PlannerListener l : listeners) l.timed(phase, nanos);
+	}
+
+	@Override
+	public void finished(LinearPlanner planner) {
+		for (PlannerListener l : listeners) l.finished(planner);
+	}
+
+}
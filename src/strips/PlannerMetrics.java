@@ -0,0 +1,134 @@
+package strips;
+
+/**
+ *
+ * The PlannerMetrics count what a LinearPlanner does and measure the time
+ * it spends in every phase, in nanoseconds, without writing any log. They
+ * are registered as a listener of the planner, and follow its stack while
+ * a plan is being executed.
+ *
+ * The metrics keep adding up while they are registered, over all the plans
+ * executed. A snapshot of them can be taken at any moment, and snapshots of
+ * several runs can be added up. The metrics are meant to be used by one
+ * planner at a time, while snapshots can be shared by any thread.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlannerMetrics implements PlannerListener, ChangeListener {
+
+	public enum Counter {
+		ITERATIONS, PUSHES, POPS, INSTANTIATIONS, SELECTIONS, BINDINGS, APPLICATIONS, BACKTRACKS
+	}
+
+	private long[] counters;
+	private long[] nanos;
+	private long[] calls;
+	private int depth;
+	private int maxDepth;
+	private long totalNanos;
+	private int runs;
+
+	/* Start of the plan being executed, and its stack */
+	private long start;
+	private PlannerStack stack;
+
+	/**
+	 * Creates the metrics, all of them at 0.
+	 */
+	public PlannerMetrics() {
+		reset();
+	}
+
+	/**
+	 * Sets all the metrics to 0 again.
+	 */
+	public void reset() {
+		counters = new long[Counter.values().length];
+		nanos = new long[Phase.values().length];
+		calls = new long[Phase.values().length];
+		maxDepth = 0;
+		totalNanos = 0L;
+		runs = 0;
+	}
+
+	/**
+	 * Returns the metrics as they are now.
+	 */
+	public MetricsSnapshot snapshot() {
+		return new MetricsSnapshot(counters, nanos, calls, maxDepth, totalNanos, runs);
+	}
+
+	@Override
+	public void started(LinearPlanner planner) {
+		stack = planner.getStack();
+		depth = stack.getStack().size();
+		maxDepth = Math.max(maxDepth, depth);
+		stack.addListener(this);
+		start = System.nanoTime();
+	}
+
+	@Override
+	public void finished(LinearPlanner planner) {
+		totalNanos += System.nanoTime() - start;
+		runs++;
+		stack.removeListener(this);
+		stack = null;
+	}
+
+	@Override
+	public void iteration(int iteration, Stackable elem) {
+		counters[Counter.ITERATIONS.ordinal()]++;
+	}
+
+	@Override
+	public void selected(Predicate goal, Operator op) {
+		counters[Counter.SELECTIONS.ordinal()]++;
+	}
+
+	@Override
+	public void applied(Operator op) {
+		counters[Counter.APPLICATIONS.ordinal()]++;
+	}
+
+	@Override
+	public void instantiated(Predicate pred) {
+		counters[Counter.INSTANTIATIONS.ordinal()]++;
+	}
+
+	@Override
+	public void backtracked() {
+		counters[Counter.BACKTRACKS.ordinal()]++;
+	}
+
+	@Override
+	public void timed(Phase phase, long time) {
+		nanos[phase.ordinal()] += time;
+		calls[phase.ordinal()]++;
+	}
+
+	@Override
+	public void pushed(Stackable elem) {
+		counters[Counter.PUSHES.ordinal()]++;
+		if (++depth > maxDepth) {
+			maxDepth = depth;
+		}
+	}
+
+	@Override
+	public void popped(Stackable elem) {
+		counters[Counter.POPS.ordinal()]++;
+		depth--;
+	}
+
+	@Override
+	public void bound(Variable var) {
+		counters[Counter.BINDINGS.ordinal()]++;
+	}
+
+	@Override
+	public void unified(Variable var, Variable other) {
+		counters[Counter.BINDINGS.ordinal()]++;
+	}
+
+}
@@ -1,6 +1,5 @@
 package strips;
 
-import java.util.Collections;
 import java.util.Stack;
 
 /**
@@ -10,7 +9,7 @@ import java.util.Stack;
  * a stack in which predicates, operators and sets of predicates
  * can be stacked.
  * 
- * The PlannerStack manages a dictionary of all parameters contained
+ * The PlannerStack manages the bindings of all parameters contained
  * in the stack, so all the elements stacked are aware of parameters
  * being instantiated.
  * 
@@ -21,12 +20,19 @@ public class PlannerStack {
 	
 	/* The stack of goals used by the planner */
 	private Stack<Stackable> stack;
+	
+	/* The variables of the uninstantiated parameters in the stack */
+	private Bindings bindings;
+	
+	private ChangeListeners listeners;
 
 	/**
 	 * Creates a PlannerStack.
 	 */
 	public PlannerStack() {
 		stack = new Stack<>();
+		listeners = new ChangeListeners();
+		bindings = new Bindings(listeners);
 	}
 	
 	/**
@@ -35,7 +41,9 @@ public class PlannerStack {
 	 * register them.
 	 */
 	public void push(Stackable elem) {
+		register(elem);
 		stack.push(elem);
+		listeners.pushed(elem);
 	}
 	
 	/**
@@ -43,7 +51,9 @@ public class PlannerStack {
 	 * it from the stack.
 	 */
 	public Stackable pop() {
-		return stack.pop();
+		Stackable elem = stack.pop();
+		listeners.popped(elem);
+		return elem;
 	}
 	
 	/**
@@ -54,50 +64,69 @@ public class PlannerStack {
 	}
 	
 	/**
-	 * Adds a new entry to the mappings that translate uninstantiated
-	 * variables to its instantiated version.
+	 * Binds an uninstantiated variable to its instantiated version. All the
+	 * parameters of the stack that refer to the variable see the new value,
+	 * without having to visit the elements of the stack.
 	 */
-	public void translateParameters(String value, String translation) {
-		for (int i=0; i<stack.size(); i++) {
-			Stackable elem = stack.get(i);
-			if (elem instanceof SingleStackable) {
-				translate(value, translation, (SingleStackable) elem);
-			} else if (elem instanceof PredicateSet) {
-				PredicateSet set = (PredicateSet) elem;
-				for (Predicate pred : set.getPredicates()) {
-					translate(value, translation, pred);
-				}
-			}
-		}
+	public void translateParameters(Parameter value, Parameter translation) {
+		bindings.bind(value, translation);
 	}
 	
 	/**
-	 * Execute the parameters translation of a single stackable element, that is,
-	 * a predicate or an operator.
+	 * Registers a listener that is notified of every element stacked
+	 * or unstacked, and of every variable bound.
 	 */
-	private void translate(String value, String translation, SingleStackable elem) {
-		/* Translates parameters of the element itself */
-		boolean changed = false;
-		for (int j=0; !changed && j<elem.getParams().size(); j++) {
-			String oldValue = elem.getParams().get(j).getValue();
-			if (value.equals(oldValue)) {
-				elem.getParams().get(j).setValue(translation);
+	public void addListener(ChangeListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeListener(ChangeListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Registers the uninstantiated parameters of a stacked element in the
+	 * bindings, that is, the ones of a predicate or an operator (including
+	 * its tables), or the ones of every predicate of a set.
+	 */
+	private void register(Stackable elem) {
+		if (elem instanceof SingleStackable) {
+			register((SingleStackable) elem);
+		} else if (elem instanceof PredicateSet) {
+			for (Predicate pred : ((PredicateSet) elem).predicates()) {
+				register(pred);
 			}
 		}
-		
-		/* If it is an operator, also the tables need translation */
+	}
+	
+	private void register(SingleStackable elem) {
 		if (elem instanceof Operator) {
-			Operator op = (Operator) elem;
-			
-			/* Translates predicates from preconditions, adds and deletes tables */
+			register((Operator) elem);
+			return;
+		}
+		for (Parameter p : elem.getParams()) {
+			bindings.register(p);
+		}
+	}
+	
+	/**
+	 * Registers the arguments of an operator. Its parameters and its tables
+	 * share them, so the tables are not resolved just to be registered, unless
+	 * one of them was set apart from the schema.
+	 */
+	private void register(Operator op) {
+		for (Parameter p : op.getArguments()) {
+			bindings.register(p);
+		}
+		if (op.hasOwnTables()) {
 			for (Predicate pred : op.getPreconditions()) {
-				translate(value, translation, pred);
+				register(pred);
 			}
 			for (Predicate pred : op.getAdds()) {
-				translate(value, translation, pred);
+				register(pred);
 			}
 			for (Predicate pred : op.getDeletes()) {
-				translate(value, translation, pred);
+				register(pred);
 			}
 		}
 	}
@@ -113,30 +142,16 @@ public class PlannerStack {
 		this.stack = stack;
 	}
 	
+	public Bindings getBindings() {
+		return bindings;
+	}
+	
 	public String toString() {
-		String s =  "";
+		StringBuilder s = new StringBuilder();
 		for (int i=stack.size()-1; i>=0; i--) {
-			String text = stack.get(i).toString();
-			int textLength = text.length();
-			s += "|" + String.join("", Collections.nCopies(78, " ")) + "|\n";
-			
-			/* 
-			 * Separates the full text of the element in parts of maximum of 78 characters,
-			 * and writes every part in a different line.
-			 */
-			int pos = 0;
-			while (pos < textLength) {
-				String part = text.substring(pos, Math.min(pos+76, textLength));
-				s += "| " + part;
-				/* Adds as many spaces as necessary to fulfill 80 characters in the whole line */
-				s += String.join("", Collections.nCopies(77-part.length(), " ")) + "|\n";
-				pos += 76;
-			}
-			s += "|" + String.join("", Collections.nCopies(78, " ")) + "|\n";
-			s += "|" + String.join("", Collections.nCopies(78, "-")) + "|\n";
+			TraceFormatter.appendBox(s, stack.get(i).toString());
 		}
-		return s;
-		
+		return s.toString();
 	}
 	
 }
@@ -0,0 +1,20 @@
+package strips;
+
+/**
+ * 
+ * A PlanningException is thrown when the LinearPlanner finds a 
+ * situation it cannot solve while executing the plan. For example,
+ * a predicate that has to be achieved but no available operator adds it.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlanningException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+	
+	public PlanningException(String message) {
+		super(message);
+	}
+
+}
@@ -33,10 +33,29 @@ public class Predicate extends SingleStackable {
 		super.setParams(params);
 	}
 	
+	/**
+	 * Creates a predicate from its name, the identifier of the name
+	 * and a list of parameters.
+	 */
+	Predicate(String name, int nameId, List<Parameter> params) {
+		super.setName(name, nameId);
+		super.setParams(params);
+	}
+	
+	/**
+	 * Checks whether all the parameters of the predicate are instantiated.
+	 */
+	public boolean isInstantiated() {
+		for (Parameter p : getParams()) {
+			if (!p.isInstantiated()) return false;
+		}
+		return true;
+	}
+	
 	public boolean equals(Object obj) {
 		if (obj == null) return false;
 		if (obj == this) return true;
-		if (!(obj instanceof Predicate)) return true;
+		if (!(obj instanceof Predicate)) return false;
 		
 		Predicate other = (Predicate) obj;
 		if (getParams().size() == other.getParams().size()) {
@@ -46,21 +65,35 @@ public class Predicate extends SingleStackable {
 					eq = false;
 				}
 			}
-			return eq && getName().equals(other.getName());
+			return eq && getNameId() == other.getNameId();
 		} else return false;
 	}
 	
+	/**
+	 * Combines the name and the values of the parameters, so equal
+	 * predicates have the same hash code. It changes if a parameter is
+	 * instantiated, so predicates must not be modified while they
+	 * are part of a State.
+	 */
+	public int hashCode() {
+		int hash = getNameId();
+		for (Parameter p : getParams()) {
+			hash = 31*hash + p.getValueId();
+		}
+		return hash;
+	}
+	
 	public String toString() {
-		String s = getName();
+		StringBuilder s = new StringBuilder(getName());
 		if (getParams().size()>0) {
-			s += "(";
+			s.append('(');
 			for (int i=0; i<getParams().size(); i++) {
-				s += getParams().get(i).toString();
-				s += (i < getParams().size()-1) ? ", " : ")";
+				s.append(getParams().get(i).getValue());
+				s.append((i < getParams().size()-1) ? ", " : ")");
 			}
 		}
 		
-		return s;
+		return s.toString();
 	}
 	
 }
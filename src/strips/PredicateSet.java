@@ -1,5 +1,7 @@
 package strips;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -31,7 +33,7 @@ public class PredicateSet implements Stackable {
 		boolean found = false;
 		for (int i=0; !found && i<predicates.size(); i++) {
 			/* It must have the same name as one of the set */
-			if (pred.getName().equals(predicates.get(i).getName())) {
+			if (pred.getNameId() == predicates.get(i).getNameId()) {
 				found = true;
 				for (int j=0; found && j<predicates.get(i).getParams().size(); j++) {
 					/* All their parameters must be the same */
@@ -42,6 +44,14 @@ public class PredicateSet implements Stackable {
 		return found;
 	}
 	
+	/**
+	 * Returns the predicates of the set to be iterated, without copying
+	 * them. They must not be changed through it.
+	 */
+	public Collection<Predicate> predicates() {
+		return predicates;
+	}
+	
 	/* Getters and setters */
 	
 	public List<Predicate> getPredicates() {
@@ -53,14 +63,15 @@ public class PredicateSet implements Stackable {
 	}
 	
 	public String toString() {
-		String s = "[";
+		StringBuilder s = new StringBuilder("[");
 		
-		for (int i=0; i<predicates.size(); i++) {
-			s += predicates.get(i).toString();
-			s += (i < predicates.size()-1) ? "; " : "]";
+		Iterator<Predicate> predicates = predicates().iterator();
+		while (predicates.hasNext()) {
+			s.append(predicates.next().toString());
+			s.append(predicates.hasNext() ? "; " : "]");
 		}
 		
-		return s;
+		return s.toString();
 	}
 	
 }
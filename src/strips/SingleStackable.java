@@ -19,6 +19,7 @@ import java.util.List;
 public abstract class SingleStackable implements Stackable {
 	
 	private String name;
+	private int nameId;
 	private List<Parameter> params;
 	
 	
@@ -30,6 +31,20 @@ public abstract class SingleStackable implements Stackable {
 
 	public void setName(String name) {
 		this.name = name;
+		nameId = SymbolTable.current().intern(name);
+	}
+	
+	/**
+	 * Sets the name together with its identifier, which is already
+	 * known, without looking it up in the SymbolTable.
+	 */
+	void setName(String name, int nameId) {
+		this.name = name;
+		this.nameId = nameId;
+	}
+	
+	public int getNameId() {
+		return nameId;
 	}
 	
 	public List<Parameter> getParams() {
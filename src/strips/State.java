@@ -1,7 +1,16 @@
 package strips;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 
@@ -9,16 +18,65 @@ import java.util.List;
  * by the linear planner. A state is, in fact, a set of
  * predicates that are true for that set.
  * 
+ * The predicates are kept in a hash index, so checking, adding or
+ * removing one of them takes constant time. The index remembers the
+ * order in which the predicates were added, which is the order used
+ * when listing them.
+ * 
+ * A secondary index relates every predicate name, and every value of
+ * the arguments of that name at each position, with the predicates
+ * of the state that have them. It is used for finding the predicates
+ * that can instantiate a partially instantiated one, like Machine(_o, 1).
+ * 
+ * The state also keeps its Zobrist hash, updated with every predicate
+ * added or removed, so repeated states can be detected in constant time.
+ * 
+ * Besides the predicates, a state has numeric fluents, like the cost of
+ * the plan or a counter. They are kept as primitive values by the
+ * identifier of their name, so reading or updating one does not depend
+ * on the number of predicates. Fluents are not part of the Zobrist hash,
+ * as they count what has been done but do not decide what can be done.
+ * 
  * @author Javier Beltran, Jorge Rodriguez
  *
  */
 public class State extends PredicateSet {
+	
+	/* Every predicate maps to itself, so the instance kept can be retrieved */
+	private Map<Predicate, Predicate> index;
+	private Collection<Predicate> view;
+	private PredicateList list;
+	
+	/* Predicates by name, and by name and value of the argument at each position */
+	private Map<Integer, Set<Predicate>> byName;
+	private List<Map<Long, Set<Predicate>>> byArgument;
+	
+	private long zobristHash;
+	
+	/* Numeric fluents, as the identifiers of their names and their values */
+	private int[] fluentNames;
+	private long[] fluentValues;
+	private int fluents;
+	
+	private ChangeListeners listeners;
+	
+	/* The table of the names of the fluents */
+	private SymbolTable symbols;
 
 	/**
-	 * Creates a state from a list of predicates.
+	 * Creates a state from a list of predicates, without fluents. Its fluents
+	 * are named in the current SymbolTable of the thread creating it.
 	 */
 	public State(List<Predicate> predicates) {
-		super(predicates);
+		/* The predicates are kept in the index instead of the list */
+		super(null);
+		listeners = new ChangeListeners();
+		symbols = SymbolTable.current();
+		fluentNames = new int[4];
+		fluentValues = new long[4];
+		fluents = 0;
+		list = new PredicateList();
+		setPredicates(predicates);
 	}
 	
 	/**
@@ -31,21 +89,354 @@ public class State extends PredicateSet {
 		op.apply(this);
 	}
 	
-	public void removePredicates(List<Predicate> dels) {
-		List<Predicate> changed = new ArrayList<>();
-		for (int i=0; i<getPredicates().size(); i++) {
-			Predicate statePred = getPredicates().get(i);
-			boolean found = false;
-			for (int j=0; !found && j<dels.size(); j++) {
-				if (statePred.equals(dels.get(j))) {
-					found = true;
+	/**
+	 * Checks whether one predicate is true in the state.
+	 */
+	@Override
+	public boolean contains(Predicate pred) {
+		return index.containsKey(pred);
+	}
+	
+	/**
+	 * Adds a predicate to the state. Returns false if it was
+	 * already true in the state.
+	 */
+	public boolean addPredicate(Predicate pred) {
+		if (!index.containsKey(pred)) {
+			index.put(pred, pred);
+			indexed(byName, pred.getNameId()).add(pred);
+			for (int i=0; i<pred.getParams().size(); i++) {
+				if (byArgument.size() == i) {
+					byArgument.add(new HashMap<Long, Set<Predicate>>());
+				}
+				indexed(byArgument.get(i), argumentKey(pred, i)).add(pred);
+			}
+			zobristHash ^= Zobrist.key(pred);
+			list.changed();
+			listeners.added(pred);
+			return true;
+		} else return false;
+	}
+	
+	public void addPredicates(Collection<Predicate> adds) {
+		for (Predicate pred : adds) {
+			addPredicate(pred);
+		}
+	}
+	
+	/**
+	 * Removes a predicate from the state. Returns false if it
+	 * was not true in the state.
+	 */
+	public boolean removePredicate(Predicate pred) {
+		/* The listeners are given the instance that was in the state */
+		Predicate removed = index.remove(pred);
+		if (removed != null) {
+			byName.get(pred.getNameId()).remove(pred);
+			for (int i=0; i<pred.getParams().size(); i++) {
+				byArgument.get(i).get(argumentKey(pred, i)).remove(pred);
+			}
+			zobristHash ^= Zobrist.key(pred);
+			list.changed();
+			listeners.removed(removed);
+			return true;
+		} else return false;
+	}
+	
+	public void removePredicates(Collection<Predicate> dels) {
+		for (Predicate pred : dels) {
+			removePredicate(pred);
+		}
+	}
+	
+	/**
+	 * Returns the predicates of the state that may instantiate a pattern, that
+	 * is, the ones with the same name and the same values in the arguments that
+	 * the pattern has instantiated. The arguments are checked through the index,
+	 * and only the most selective one is used, so the caller must still compare
+	 * the rest of them. The predicates are given in the order of the state.
+	 */
+	public Collection<Predicate> getCandidates(Predicate pattern) {
+		Set<Predicate> candidates = byName.get(pattern.getNameId());
+		for (int i=0; candidates != null && i<pattern.getParams().size(); i++) {
+			if (pattern.getParams().get(i).isInstantiated()) {
+				Set<Predicate> withArgument = (i < byArgument.size()) ? 
+						byArgument.get(i).get(argumentKey(pattern, i)) : null;
+				if (withArgument == null || withArgument.size() < candidates.size()) {
+					candidates = withArgument;
 				}
 			}
-			if (!found) {
-				changed.add(statePred);
+		}
+		return (candidates == null) ? Collections.<Predicate>emptySet() :
+			Collections.unmodifiableSet(candidates);
+	}
+	
+	/**
+	 * Returns the set of predicates of an index for a key, creating it if needed.
+	 */
+	private <K> Set<Predicate> indexed(Map<K, Set<Predicate>> map, K key) {
+		Set<Predicate> set = map.get(key);
+		if (set == null) {
+			set = new LinkedHashSet<>();
+			map.put(key, set);
+		}
+		return set;
+	}
+	
+	/**
+	 * Packs the name of a predicate and the value of one of its arguments.
+	 */
+	private static long argumentKey(Predicate pred, int position) {
+		return ((long) pred.getNameId() << 32) | 
+				(pred.getParams().get(position).getValueId() & 0xffffffffL);
+	}
+	
+	/**
+	 * Checks whether the state has a value for a fluent.
+	 */
+	public boolean hasFluent(String name) {
+		/* Looking a name up never registers it */
+		int nameId = symbols.lookup(name);
+		return nameId >= 0 && slot(nameId) >= 0;
+	}
+	
+	/**
+	 * Returns the value of a fluent, or 0 if the state has no value for it.
+	 */
+	public long getFluent(String name) {
+		int nameId = symbols.lookup(name);
+		return (nameId < 0) ? 0L : getFluent(nameId);
+	}
+	
+	/**
+	 * Returns the value of a fluent, given the identifier of its name,
+	 * or 0 if the state has no value for it.
+	 */
+	public long getFluent(int nameId) {
+		int slot = slot(nameId);
+		return (slot < 0) ? 0L : fluentValues[slot];
+	}
+	
+	public void setFluent(String name, long value) {
+		setFluent(symbols.intern(name), value);
+	}
+	
+	/**
+	 * Sets the value of a fluent, given the identifier of its name. The
+	 * fluent is added to the state if it had no value.
+	 */
+	public void setFluent(int nameId, long value) {
+		int slot = slot(nameId);
+		if (slot < 0) {
+			if (fluents == fluentNames.length) {
+				fluentNames = Arrays.copyOf(fluentNames, fluents * 2);
+				fluentValues = Arrays.copyOf(fluentValues, fluents * 2);
 			}
+			slot = fluents++;
+			fluentNames[slot] = nameId;
+		}
+		long oldValue = fluentValues[slot];
+		fluentValues[slot] = value;
+		listeners.changed(nameId, oldValue, value);
+	}
+	
+	/**
+	 * Adds an amount to a fluent, given the identifier of its name. A
+	 * fluent without value starts from 0.
+	 */
+	public void increaseFluent(int nameId, long amount) {
+		setFluent(nameId, getFluent(nameId) + amount);
+	}
+	
+	/**
+	 * Returns the number of fluents with a value in the state.
+	 */
+	int getFluentCount() {
+		return fluents;
+	}
+	
+	/**
+	 * Returns the identifier of the name of the i-th fluent given a value.
+	 */
+	int getFluentName(int i) {
+		return fluentNames[i];
+	}
+	
+	/**
+	 * Returns the value of the i-th fluent given a value.
+	 */
+	long getFluentValue(int i) {
+		return fluentValues[i];
+	}
+	
+	/**
+	 * Returns the fluents of the state and their values, in the order
+	 * they were given a value.
+	 */
+	public Map<String, Long> getFluents() {
+		Map<String, Long> values = new LinkedHashMap<>();
+		for (int i=0; i<fluents; i++) {
+			values.put(symbols.symbol(fluentNames[i]), fluentValues[i]);
+		}
+		return values;
+	}
+	
+	/**
+	 * Returns the position of a fluent in the arrays, or -1 if the state
+	 * has no value for it. States have a few fluents, so it is a linear search.
+	 */
+	private int slot(int nameId) {
+		for (int i=0; i<fluents; i++) {
+			if (fluentNames[i] == nameId) return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Registers a listener that is notified of every predicate added
+	 * to or removed from the state, and of every fluent changed.
+	 */
+	public void addListener(ChangeListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeListener(ChangeListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Returns the Zobrist hash of the state, that is, the XOR of the
+	 * Zobrist keys of all its predicates.
+	 */
+	public long getZobristHash() {
+		return zobristHash;
+	}
+	
+	/**
+	 * Returns the number of predicates that are true in the state.
+	 */
+	public int size() {
+		return index.size();
+	}
+	
+	/**
+	 * Returns the predicates of the state followed by its fluents,
+	 * written as Name=value.
+	 */
+	@Override
+	public String toString() {
+		if (fluents == 0) {
+			return super.toString();
+		}
+		StringBuilder s = new StringBuilder("[");
+		for (Predicate pred : view) {
+			s.append(pred.toString()).append("; ");
+		}
+		for (int i=0; i<fluents; i++) {
+			s.append(symbols.symbol(fluentNames[i])).append('=').append(fluentValues[i]);
+			s.append((i < fluents-1) ? "; " : "]");
 		}
-		setPredicates(changed);
+		return s.toString();
 	}
 	
+	
+	/* Getters and setters */
+	
+	/**
+	 * Returns a read-only view of the predicates of the state, which
+	 * follows its changes. It is the cheapest way of iterating them.
+	 */
+	@Override
+	public Collection<Predicate> predicates() {
+		return view;
+	}
+	
+	/**
+	 * Returns the predicates of the state as a List, for the callers that
+	 * need one. It is the same list on every call and it follows the state:
+	 * adding to it or removing from it changes the state, like the add and
+	 * remove methods do.
+	 */
+	@Override
+	public List<Predicate> getPredicates() {
+		return list;
+	}
+	
+	@Override
+	public void setPredicates(List<Predicate> predicates) {
+		if (predicates == list) {
+			predicates = new ArrayList<>(predicates);
+		}
+		list.changed();
+		index = new LinkedHashMap<>();
+		view = Collections.unmodifiableSet(index.keySet());
+		zobristHash = 0L;
+		byName = new HashMap<>();
+		byArgument = new ArrayList<>();
+		addPredicates(predicates);
+	}
+	
+	/**
+	 * The predicates of the state as a List. Reading them by position copies
+	 * them into an array once, until the state changes again, so going over
+	 * them by position takes linear time. A state is a set, so a predicate
+	 * added at any position goes to the end, and adding one that is already
+	 * in the state does nothing.
+	 */
+	private class PredicateList extends AbstractList<Predicate> {
+	
+		private Predicate[] snapshot;
+	
+		/**
+		 * Forgets the array read, after a change of the state.
+		 */
+		private void changed() {
+			snapshot = null;
+			modCount++;
+		}
+	
+		@Override
+		public Predicate get(int i) {
+			if (snapshot == null) {
+				snapshot = index.keySet().toArray(new Predicate[index.size()]);
+			}
+			return snapshot[i];
+		}
+	
+		@Override
+		public int size() {
+			return index.size();
+		}
+	
+		@Override
+		public boolean contains(Object o) {
+			return index.containsKey(o);
+		}
+	
+		@Override
+		public void add(int i, Predicate pred) {
+			addPredicate(pred);
+		}
+	
+		@Override
+		public Predicate set(int i, Predicate pred) {
+			Predicate previous = remove(i);
+			addPredicate(pred);
+			return previous;
+		}
+	
+		@Override
+		public Predicate remove(int i) {
+			Predicate pred = get(i);
+			removePredicate(pred);
+			return pred;
+		}
+	
+		@Override
+		public boolean remove(Object o) {
+			return (o instanceof Predicate) && removePredicate((Predicate) o);
+		}
+	
+	}
+
 }
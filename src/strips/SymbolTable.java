@@ -0,0 +1,212 @@
+package strips;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ *
+ * A SymbolTable interns the symbols used by a problem (names of
+ * predicates and operators, and the values of the parameters) and
+ * assigns every different symbol a unique integer identifier.
+ *
+ * Predicates and parameters keep the identifier of their symbols, so
+ * comparing two of them is an integer comparison instead of a
+ * comparison of text strings. The identifiers are given in order of
+ * appearance, starting from 0, and they are never reused.
+ *
+ * Predicates and parameters are interned in the current table of their
+ * thread, which is the default table shared by the whole application
+ * unless another one is used. Objects interned in different tables must
+ * not be compared. A domain can have its own table, and every problem of
+ * the domain a table of its own on top of it: the problem sees the symbols
+ * of the domain, which can no longer register new ones, and registers the
+ * new symbols in its table, which is forgotten with the problem. So a
+ * long-running application, like a server, does not keep every name it
+ * reads.
+ *
+ * Tables can be used from several threads at the same time, and they are
+ * bounded: once a table has capacity symbols of its own, registering a
+ * new one throws a SymbolTableFullException, while the symbols already
+ * registered can still be used.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class SymbolTable {
+
+	/* Symbols of a table, far more than any problem of the application needs */
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+
+	/* The table used by predicates and parameters unless told otherwise */
+	private static final SymbolTable DEFAULT = new SymbolTable();
+
+	/* The table used by every thread, if it is not the default one */
+	private static final ThreadLocal<SymbolTable> CURRENT = new ThreadLocal<>();
+
+	/* The table below this one, and the number of its symbols */
+	private SymbolTable parent;
+	private int base;
+	private volatile boolean frozen;
+
+	private ConcurrentMap<String, Integer> ids;
+	private volatile String[] symbols;
+	private int size;
+	private volatile int capacity;
+
+	/**
+	 * Creates an empty SymbolTable, with the default capacity.
+	 */
+	public SymbolTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty SymbolTable that holds at most capacity symbols.
+	 */
+	public SymbolTable(int capacity) {
+		ids = new ConcurrentHashMap<>();
+		symbols = new String[64];
+		size = 0;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Creates a SymbolTable on top of another one, that has its symbols and
+	 * at most capacity new ones. The other table cannot register any new
+	 * symbol after this, so their identifiers do not clash.
+	 */
+	public SymbolTable(SymbolTable parent, int capacity) {
+		this(capacity);
+		parent.frozen = true;
+		this.parent = parent;
+		base = parent.size();
+	}
+
+	/**
+	 * Returns the table shared by the whole application.
+	 */
+	public static SymbolTable getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns the table where the current thread interns its symbols.
+	 */
+	public static SymbolTable current() {
+		SymbolTable table = CURRENT.get();
+		return (table == null) ? DEFAULT : table;
+	}
+
+	/**
+	 * Makes the current thread intern its symbols in a table, or in the
+	 * default one if it is null. Returns the table used before, to be
+	 * used again once done.
+	 */
+	public static SymbolTable use(SymbolTable table) {
+		SymbolTable previous = current();
+		if (table == null || table == DEFAULT) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(table);
+		}
+		return previous;
+	}
+
+	/**
+	 * Returns the identifier of a symbol, registering it in
+	 * the table if it did not appear before. Throws a
+	 * SymbolTableFullException if a new symbol does not fit,
+	 * or the table has another one on top.
+	 */
+	public int intern(String symbol) {
+		int id = lookup(symbol);
+		if (id < 0) {
+			synchronized (ids) {
+				/* Checks again, another thread could have registered it */
+				Integer known = ids.get(symbol);
+				if (known != null) {
+					return known;
+				}
+				if (frozen) {
+					throw new SymbolTableFullException("Symbol table closed, cannot register " + symbol);
+				}
+				if (size >= capacity) {
+					throw new SymbolTableFullException("Symbol table full: " + capacity
+							+ " symbols, cannot register " + symbol);
+				}
+				if (size == symbols.length) {
+					symbols = Arrays.copyOf(symbols, size * 2);
+				}
+				symbols[size] = symbol;
+				id = base + size++;
+				ids.put(symbol, id);
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the identifier of a symbol, or -1 if it has never
+	 * been registered in the table.
+	 */
+	public int lookup(String symbol) {
+		if (parent != null) {
+			int id = parent.lookup(symbol);
+			if (id >= 0) return id;
+		}
+		Integer id = ids.get(symbol);
+		return (id == null) ? -1 : id;
+	}
+
+	/**
+	 * Returns the symbol identified by id. Throws an
+	 * IndexOutOfBoundsException if it is not registered.
+	 */
+	public String symbol(int id) {
+		if (id < base) {
+			return parent.symbol(id);
+		}
+		/* The symbol was stored before its identifier was given */
+		String[] stored = symbols;
+		String symbol = (id - base < stored.length) ? stored[id - base] : null;
+		if (symbol == null) {
+			throw new IndexOutOfBoundsException("No symbol " + id);
+		}
+		return symbol;
+	}
+
+	/**
+	 * Returns the number of symbols registered in the table, with the
+	 * ones of the tables below it.
+	 */
+	public int size() {
+		synchronized (ids) {
+			return base + size;
+		}
+	}
+
+
+	/* Getters and setters */
+
+	public SymbolTable getParent() {
+		return parent;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Sets the maximum number of symbols of the table. The symbols
+	 * already registered are kept even if there are more.
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+}
@@ -0,0 +1,21 @@
+package strips;
+
+/**
+ * 
+ * A SymbolTableFullException is thrown when a SymbolTable cannot 
+ * register a new symbol, because it has reached its capacity or it
+ * has another table on top. The problem is well formed, but it has
+ * more names than the table allows.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class SymbolTableFullException extends IllegalStateException {
+
+	private static final long serialVersionUID = 1L;
+	
+	public SymbolTableFullException(String message) {
+		super(message);
+	}
+
+}
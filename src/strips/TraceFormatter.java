@@ -0,0 +1,79 @@
+package strips;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * 
+ * The TraceFormatter contains the layout of the log of the planner:
+ * texts split in lines of 80 characters, and the elements of the stack
+ * drawn as boxes of the same width.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class TraceFormatter {
+	
+	private static final int WIDTH = 80;
+	
+	/**
+	 * Writes one iteration of the planner: its number, the text of the
+	 * current state and the texts of the elements of the stack, from the
+	 * top to the bottom.
+	 */
+	public static void printIteration(PrintStream out, int iteration, String state,
+			List<String> stack) {
+		out.println("Iteration: " + iteration);
+		out.println("\nCurrent state:");
+		int pos = 0;
+		while (pos < state.length()) {
+			out.println(state.substring(pos, Math.min(pos+WIDTH, state.length())));
+			pos += WIDTH;
+		}
+		out.println("\nStack:");
+		StringBuilder s = new StringBuilder();
+		for (String text : stack) {
+			appendBox(s, text);
+		}
+		out.println(s);
+		out.println("-----");
+	}
+	
+	/**
+	 * Draws the text of an element of the stack inside a box.
+	 */
+	public static void appendBox(StringBuilder s, String text) {
+		int textLength = text.length();
+		appendLine(s, ' ');
+		
+		/* 
+		 * Separates the full text of the element in parts of maximum of 76 characters,
+		 * and writes every part in a different line.
+		 */
+		int pos = 0;
+		while (pos < textLength) {
+			int end = Math.min(pos+WIDTH-4, textLength);
+			s.append("| ").append(text, pos, end);
+			/* Adds as many spaces as necessary to fulfill 80 characters in the whole line */
+			for (int i=end-pos; i<WIDTH-3; i++) {
+				s.append(' ');
+			}
+			s.append("|\n");
+			pos += WIDTH-4;
+		}
+		appendLine(s, ' ');
+		appendLine(s, '-');
+	}
+	
+	/**
+	 * Draws a line of the box filled with a character.
+	 */
+	private static void appendLine(StringBuilder s, char fill) {
+		s.append('|');
+		for (int i=0; i<WIDTH-2; i++) {
+			s.append(fill);
+		}
+		s.append("|\n");
+	}
+	
+}
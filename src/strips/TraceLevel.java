@@ -0,0 +1,27 @@
+package strips;
+
+/**
+ * 
+ * The TraceLevel indicates how much information about its execution
+ * the planner writes in its log. Every level includes the information
+ * of the previous ones:
+ * 
+ * OFF writes nothing. PLAN writes the plan found. SUMMARY also writes
+ * the number of steps, the execution time and the number of iterations.
+ * FULL also writes the current state and the stack at every iteration.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public enum TraceLevel {
+	
+	OFF, PLAN, SUMMARY, FULL;
+	
+	/**
+	 * Checks whether this level writes the information of another level.
+	 */
+	public boolean includes(TraceLevel level) {
+		return ordinal() >= level.ordinal();
+	}
+	
+}
@@ -0,0 +1,273 @@
+package strips;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 
+ * The TraceReplayer reads the events written by an EventTraceSink and
+ * rebuilds the text log that the planner would have written with the
+ * FULL level. It replays the changes of the state, its fluents, the stack
+ * and the variables, and writes the state and the stack at every iteration.
+ * 
+ * It can be run on its own, given the file of events and, optionally,
+ * the file where the log is written (the standard output by default).
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class TraceReplayer {
+	
+	private DataInputStream input;
+	
+	/* Texts of the symbols and names of the variables, by identifier */
+	private Map<Integer, String> symbols;
+	private Map<Integer, String> variableNames;
+	
+	/* Union-find of the variables, and the symbols they are bound to */
+	private Map<Integer, Integer> parents;
+	private Map<Integer, Integer> values;
+	
+	/* The replayed state and stack */
+	private Set<String> state;
+	private Map<String, Long> fluents;
+	private List<Element> stack;
+	
+	/**
+	 * Creates a replayer of the events read from an input.
+	 */
+	public TraceReplayer(InputStream input) {
+		this.input = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+		symbols = new HashMap<>();
+		variableNames = new HashMap<>();
+		parents = new HashMap<>();
+		values = new HashMap<>();
+		state = new LinkedHashSet<>();
+		fluents = new LinkedHashMap<>();
+		stack = new ArrayList<>();
+	}
+	
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Error: Please indicate a file of events to replay.");
+			System.exit(1);
+		}
+		try {
+			TraceReplayer replayer = new TraceReplayer(new FileInputStream(args[0]));
+			PrintStream output = (args.length > 1) ? new PrintStream(args[1]) : System.out;
+			replayer.replay(output);
+			output.close();
+		} catch (IOException e) {
+			System.out.println("Error: Could not read/write.");
+		}
+	}
+	
+	/**
+	 * Reads all the events and writes the log they describe.
+	 */
+	public void replay(PrintStream output) throws IOException {
+		int event = readEvent();
+		while (event != -1) {
+			switch (event) {
+			case EventTraceSink.SYMBOL:
+				int id = readInt();
+				symbols.put(id, input.readUTF());
+				break;
+			case EventTraceSink.VARIABLE:
+				int var = readInt();
+				variableNames.put(var, symbols.get(readInt()));
+				break;
+			case EventTraceSink.ITERATION:
+				printIteration(output, readInt());
+				break;
+			case EventTraceSink.PUSH:
+				stack.add(readElement());
+				break;
+			case EventTraceSink.POP:
+				stack.remove(stack.size() - 1);
+				break;
+			case EventTraceSink.BIND:
+				int bound = readInt();
+				values.put(find(bound), readInt());
+				break;
+			case EventTraceSink.UNIFY:
+				int root = find(readInt());
+				int other = find(readInt());
+				parents.put(other, root);
+				if (!values.containsKey(root) && values.containsKey(other)) {
+					values.put(root, values.get(other));
+				}
+				break;
+			case EventTraceSink.UNBIND:
+				values.remove(find(readInt()));
+				break;
+			case EventTraceSink.SEPARATE:
+				parents.remove(readInt());
+				break;
+			case EventTraceSink.ADD:
+				state.add(readElement().toString());
+				break;
+			case EventTraceSink.REMOVE:
+				state.remove(readElement().toString());
+				break;
+			case EventTraceSink.FLUENT:
+				String fluent = symbols.get(readInt());
+				fluents.put(fluent, input.readLong());
+				break;
+			case EventTraceSink.TEXT:
+				output.println(input.readUTF());
+				break;
+			default:
+				throw new IOException("Unknown event " + event);
+			}
+			event = readEvent();
+		}
+		output.flush();
+	}
+	
+	/**
+	 * Writes the state and the stack as they are at this point of the replay.
+	 * The state is written as State.toString does, with its fluents last.
+	 */
+	private void printIteration(PrintStream output, int iteration) {
+		StringBuilder s = new StringBuilder("[");
+		int i = 0;
+		for (String pred : state) {
+			s.append(pred).append((++i < state.size() || !fluents.isEmpty()) ? "; " : "]");
+		}
+		i = 0;
+		for (Map.Entry<String, Long> fluent : fluents.entrySet()) {
+			s.append(fluent.getKey()).append('=').append(fluent.getValue());
+			s.append((++i < fluents.size()) ? "; " : "]");
+		}
+		List<String> elems = new ArrayList<>(stack.size());
+		for (int j=stack.size()-1; j>=0; j--) {
+			elems.add(stack.get(j).toString());
+		}
+		TraceFormatter.printIteration(output, iteration, s.toString(), elems);
+	}
+	
+	/**
+	 * Reads an element written by EventTraceSink.write.
+	 */
+	private Element readElement() throws IOException {
+		Element elem = new Element(readInt());
+		if (elem.kind == EventTraceSink.SET) {
+			int size = readInt();
+			for (int i=0; i<size; i++) {
+				elem.preds.add(readElement());
+			}
+		} else {
+			elem.name = symbols.get(readInt());
+			int size = readInt();
+			elem.params = new int[size];
+			for (int i=0; i<size; i++) {
+				elem.params[i] = readInt();
+			}
+		}
+		return elem;
+	}
+	
+	/**
+	 * Returns the representative of the group of a variable.
+	 */
+	private int find(int var) {
+		Integer parent = parents.get(var);
+		if (parent == null) {
+			return var;
+		}
+		int root = find(parent);
+		parents.put(var, root);
+		return root;
+	}
+	
+	/**
+	 * Returns the text of a parameter: its symbol, the value of its
+	 * variable or the name of the variable if it is not bound.
+	 */
+	private String parameter(int param) {
+		if ((param & 1) == 0) {
+			return symbols.get(param >>> 1);
+		}
+		int var = param >>> 1;
+		Integer value = values.get(find(var));
+		return (value == null) ? variableNames.get(var) : symbols.get(value);
+	}
+	
+	/**
+	 * Reads the kind of the next event, or returns -1 at the end of the input.
+	 */
+	private int readEvent() throws IOException {
+		try {
+			return readInt();
+		} catch (EOFException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Reads an integer written by EventTraceSink.writeInt.
+	 */
+	private int readInt() throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b = input.readUnsignedByte();
+		while ((b & 0x80) != 0) {
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+			b = input.readUnsignedByte();
+		}
+		return value | (b << shift);
+	}
+	
+	/**
+	 * An element of the replayed stack or state. Its text is obtained in
+	 * the same way as the one of the original Predicate, Operator or
+	 * PredicateSet.
+	 */
+	private class Element {
+		
+		private int kind;
+		private String name;
+		private int[] params;
+		private List<Element> preds;
+		
+		private Element(int kind) {
+			this.kind = kind;
+			preds = new ArrayList<>();
+		}
+		
+		public String toString() {
+			StringBuilder s = new StringBuilder();
+			if (kind == EventTraceSink.SET) {
+				s.append('[');
+				for (int i=0; i<preds.size(); i++) {
+					s.append(preds.get(i)).append((i < preds.size()-1) ? "; " : "]");
+				}
+			} else {
+				s.append(name);
+				if (kind == EventTraceSink.OPERATOR || params.length > 0) {
+					s.append('(');
+				}
+				for (int i=0; i<params.length; i++) {
+					s.append(parameter(params[i])).append((i < params.length-1) ? ", " : ")");
+				}
+			}
+			return s.toString();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,44 @@
+package strips;
+
+/**
+ * 
+ * A TraceSink receives the log written by the LinearPlanner while it
+ * executes. The planner only sends to the sink the information allowed
+ * by its TraceLevel, so with the level OFF the sink is never used.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public interface TraceSink {
+	
+	public TraceLevel getLevel();
+	
+	/**
+	 * Called once by the planner when it is created, with its initial
+	 * state and its stack, so the sink can listen to their changes.
+	 */
+	public default void attach(State state, PlannerStack stack) {}
+	
+	/**
+	 * Traces one iteration of the planner, given the current state and
+	 * stack. They keep changing after this call, so the sink must take
+	 * whatever it needs from them before returning.
+	 */
+	public void iteration(int iteration, State state, PlannerStack stack);
+	
+	/**
+	 * Traces a line of text, like a step of the plan.
+	 */
+	public void println(String line);
+	
+	/**
+	 * Waits until everything traced has been written.
+	 */
+	public void flush();
+	
+	/**
+	 * Writes everything traced and releases the output.
+	 */
+	public void close();
+	
+}
@@ -0,0 +1,195 @@
+package strips;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * A Trail records every change done to a State and a PlannerStack, so
+ * they can be taken back to any previous point. A point is marked with
+ * mark(), and rollbackTo(mark) undoes, from the last one to the first,
+ * all the changes recorded since then: predicates added or removed,
+ * fluents changed, elements pushed or popped, variables bound or unified,
+ * and the variables in use for every name in the bindings. Both cost
+ * time proportional to the changes undone, and no copy of the state or
+ * the stack is ever made.
+ * 
+ * A rolled back state has the same predicates it had, but they may be
+ * listed in another order, as removed predicates are added again at the
+ * end. Variables are restored exactly, with the groups, ranks and values
+ * they had. A fluent given its first value after the mark is set back to
+ * 0, not removed.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class Trail implements ChangeListener {
+	
+	/* Kinds of changes recorded */
+	private static final byte ADDED = 0;
+	private static final byte REMOVED = 1;
+	private static final byte PUSHED = 2;
+	private static final byte POPPED = 3;
+	private static final byte BOUND = 4;
+	private static final byte UNIFIED = 5;
+	private static final byte CHANGED = 6;
+	private static final byte ACTIVATED = 7;
+	
+	private State state;
+	private PlannerStack stack;
+	
+	/* The changes recorded, as their kind and the objects changed */
+	private byte[] kinds;
+	private Object[] targets;
+	private Object[] others;
+	private int size;
+	
+	private boolean rollingBack;
+	
+	/**
+	 * Creates a trail that records the changes of a state and a stack,
+	 * from this moment on.
+	 */
+	public Trail(State state, PlannerStack stack) {
+		this.state = state;
+		this.stack = stack;
+		kinds = new byte[64];
+		targets = new Object[64];
+		others = new Object[64];
+		size = 0;
+		rollingBack = false;
+		
+		state.addListener(this);
+		stack.addListener(this);
+	}
+	
+	/**
+	 * Returns a mark of the current point, to roll back to it later.
+	 */
+	public int mark() {
+		return size;
+	}
+	
+	/**
+	 * Undoes all the changes recorded since a mark, in reverse order.
+	 */
+	public void rollbackTo(int mark) {
+		if (mark < 0 || mark > size) {
+			throw new IllegalArgumentException("Invalid mark " + mark);
+		}
+		rollingBack = true;
+		try {
+			while (size > mark) {
+				size--;
+				undo(kinds[size], targets[size], others[size]);
+				targets[size] = null;
+				others[size] = null;
+			}
+		} finally {
+			rollingBack = false;
+		}
+	}
+	
+	/**
+	 * Stops recording the changes of the state and the stack.
+	 */
+	public void detach() {
+		state.removeListener(this);
+		stack.removeListener(this);
+	}
+	
+	/**
+	 * Returns the number of changes recorded.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Undoes one change recorded.
+	 */
+	private void undo(byte kind, Object target, Object other) {
+		switch (kind) {
+		case ADDED:
+			state.removePredicate((Predicate) target);
+			break;
+		case REMOVED:
+			state.addPredicate((Predicate) target);
+			break;
+		case CHANGED:
+			state.setFluent((Integer) target, (Long) other);
+			break;
+		case PUSHED:
+			stack.pop();
+			break;
+		case POPPED:
+			stack.push((Stackable) target);
+			break;
+		case BOUND:
+			stack.getBindings().unbind((Variable) target);
+			break;
+		case UNIFIED:
+			stack.getBindings().separate((Variable) target, (Variable) other);
+			break;
+		case ACTIVATED:
+			stack.getBindings().restore((Integer) target, (Variable) other);
+			break;
+		}
+	}
+	
+	/**
+	 * Records a change, unless it is being done by a rollback.
+	 */
+	private void record(byte kind, Object target, Object other) {
+		if (rollingBack) return;
+		if (size == kinds.length) {
+			kinds = Arrays.copyOf(kinds, size * 2);
+			targets = Arrays.copyOf(targets, size * 2);
+			others = Arrays.copyOf(others, size * 2);
+		}
+		kinds[size] = kind;
+		targets[size] = target;
+		others[size] = other;
+		size++;
+	}
+	
+	@Override
+	public void added(Predicate pred) {
+		record(ADDED, pred, null);
+	}
+	
+	@Override
+	public void removed(Predicate pred) {
+		record(REMOVED, pred, null);
+	}
+	
+	@Override
+	public void changed(int fluent, long oldValue, long newValue) {
+		record(CHANGED, fluent, oldValue);
+	}
+	
+	@Override
+	public void pushed(Stackable elem) {
+		record(PUSHED, elem, null);
+	}
+	
+	@Override
+	public void popped(Stackable elem) {
+		record(POPPED, elem, null);
+	}
+	
+	@Override
+	public void bound(Variable var) {
+		record(BOUND, var, null);
+	}
+	
+	@Override
+	public void unified(Variable var, Variable other) {
+		record(UNIFIED, var, other);
+	}
+	
+	@Override
+	public void activated(int nameId, Variable previous) {
+		record(ACTIVATED, nameId, previous);
+	}
+	
+}
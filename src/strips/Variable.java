@@ -0,0 +1,175 @@
+package strips;
+
+/**
+ * 
+ * A Variable is an uninstantiated parameter of the problem, like _o or
+ * _n, shared by all the parameters in the stack that stand for it. When
+ * the variable is bound to a value, every parameter that refers to it
+ * gets that value at once, without having to be visited.
+ * 
+ * Variables form a union-find structure: a variable may point to another
+ * one it has been unified with, and only the representative of the group
+ * (the one that does not point to any other) holds the value. Groups are
+ * joined by rank, so finding the representative takes logarithmic time,
+ * and paths are never compressed: a union only changes the variable hung
+ * and the representative, so it can be undone exactly.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class Variable {
+	
+	private int id;
+	private String name;
+	private int nameId;
+	private Variable parent;
+	private int rank;
+	
+	/* What the union that hung this variable changed in its parent */
+	private boolean raisedRank;
+	private boolean gaveValue;
+	
+	/* The value of the variable, if the representative is bound */
+	private boolean bound;
+	private String value;
+	private int valueId;
+
+	/**
+	 * Creates an unbound variable from its identifier and its name, like _o.
+	 */
+	Variable(int id, String name, int nameId) {
+		this.id = id;
+		this.name = name;
+		this.nameId = nameId;
+		parent = null;
+		rank = 0;
+		bound = false;
+	}
+	
+	/**
+	 * Returns the representative of the group of this variable.
+	 */
+	public Variable find() {
+		Variable root = this;
+		while (root.parent != null) {
+			root = root.parent;
+		}
+		return root;
+	}
+	
+	/**
+	 * Binds the group of this variable to the value of a parameter.
+	 */
+	void bind(Parameter p) {
+		Variable root = find();
+		root.bound = true;
+		root.value = p.getValue();
+		root.valueId = p.getValueId();
+	}
+	
+	/**
+	 * Removes the value of the group of this variable.
+	 */
+	void unbind() {
+		Variable root = find();
+		root.bound = false;
+		root.value = null;
+	}
+	
+	/**
+	 * Joins the group of this variable with the group of other, and returns
+	 * the representative of the resulting group.
+	 */
+	Variable union(Variable other) {
+		Variable a = find();
+		Variable b = other.find();
+		if (a == b) return a;
+		
+		/* The shallowest group is hung from the deepest one */
+		if (a.rank < b.rank) {
+			Variable aux = a; a = b; b = aux;
+		}
+		b.parent = a;
+		b.raisedRank = (a.rank == b.rank);
+		if (b.raisedRank) a.rank++;
+		
+		/* If only one of the groups had a value, the joined group keeps it */
+		b.gaveValue = !a.bound && b.bound;
+		if (b.gaveValue) {
+			a.bound = true;
+			a.value = b.value;
+			a.valueId = b.valueId;
+		}
+		return a;
+	}
+	
+	
+	/**
+	 * Separates this variable, which must have been hung from another
+	 * one by the last union of that group, from the group it joined. The
+	 * rank and the value of the other group are restored too.
+	 */
+	void separate() {
+		if (raisedRank) {
+			parent.rank--;
+		}
+		if (gaveValue) {
+			parent.bound = false;
+			parent.value = null;
+		}
+		parent = null;
+		raisedRank = false;
+		gaveValue = false;
+	}
+	
+	
+	/* Getters and setters */
+	
+	/**
+	 * Returns the identifier of the variable, unique in its Bindings.
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int getNameId() {
+		return nameId;
+	}
+	
+	/**
+	 * Returns the rank of the group, if this variable is its representative.
+	 */
+	int getRank() {
+		return rank;
+	}
+	
+	/**
+	 * Checks whether the group of this variable has already a value.
+	 */
+	public boolean isBound() {
+		return find().bound;
+	}
+	
+	/**
+	 * Returns the value of the group of the variable, or its name if
+	 * it is not bound yet.
+	 */
+	public String getValue() {
+		Variable root = find();
+		return root.bound ? root.value : name;
+	}
+	
+	public int getValueId() {
+		Variable root = find();
+		return root.bound ? root.valueId : nameId;
+	}
+	
+	public String toString() {
+		return getValue();
+	}
+	
+}
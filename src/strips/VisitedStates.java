@@ -0,0 +1,166 @@
+package strips;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * A table of the states visited by a search, identified by their 
+ * Zobrist hash. It is an open addressing hash set of 64-bit values, so
+ * checking, registering or forgetting a state takes constant time and no
+ * objects are created, whatever the number of predicates of the states.
+ * The backtracking mode of the LinearPlanner uses it to detect the plans
+ * that go back to a state they had already reached.
+ * 
+ * Two different states may have the same hash, although it is very
+ * unlikely with 64 bits. In that case, the second one would be taken 
+ * as visited.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class VisitedStates {
+	
+	/* 0 is used for the empty slots, so a hash 0 is kept apart */
+	private long[] table;
+	private boolean zeroVisited;
+	private int size;
+	
+	/**
+	 * Creates an empty table of visited states.
+	 */
+	public VisitedStates() {
+		table = new long[1024];
+		zeroVisited = false;
+		size = 0;
+	}
+	
+	/**
+	 * Registers a state as visited. Returns false if it was already visited.
+	 */
+	public boolean visit(State state) {
+		return add(state.getZobristHash());
+	}
+	
+	/**
+	 * Checks whether a state has already been visited.
+	 */
+	public boolean isVisited(State state) {
+		return contains(state.getZobristHash());
+	}
+	
+	/**
+	 * Registers a hash. Returns false if it was already registered.
+	 */
+	public boolean add(long hash) {
+		if (hash == 0) {
+			boolean added = !zeroVisited;
+			zeroVisited = true;
+			if (added) size++;
+			return added;
+		}
+		
+		int i = slot(hash, table.length);
+		while (table[i] != 0) {
+			if (table[i] == hash) return false;
+			i = (i + 1) & (table.length - 1);
+		}
+		table[i] = hash;
+		size++;
+		
+		/* The table is kept at most half full */
+		if (2 * size > table.length) {
+			grow();
+		}
+		return true;
+	}
+	
+	/**
+	 * Forgets a hash. Returns false if it was not registered.
+	 */
+	public boolean remove(long hash) {
+		if (hash == 0) {
+			boolean removed = zeroVisited;
+			zeroVisited = false;
+			if (removed) size--;
+			return removed;
+		}
+		
+		int mask = table.length - 1;
+		int i = slot(hash, table.length);
+		while (table[i] != hash) {
+			if (table[i] == 0) return false;
+			i = (i + 1) & mask;
+		}
+		
+		/* 
+		 * The following hashes of the run are moved back into the gap when
+		 * their first slot is not after it, so all of them are still found.
+		 */
+		int gap = i;
+		for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+			int first = slot(table[j], table.length);
+			if (((j - first) & mask) >= ((j - gap) & mask)) {
+				table[gap] = table[j];
+				gap = j;
+			}
+		}
+		table[gap] = 0;
+		size--;
+		return true;
+	}
+	
+	/**
+	 * Checks whether a hash has been registered.
+	 */
+	public boolean contains(long hash) {
+		if (hash == 0) return zeroVisited;
+		
+		int i = slot(hash, table.length);
+		while (table[i] != 0) {
+			if (table[i] == hash) return true;
+			i = (i + 1) & (table.length - 1);
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the number of states visited.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Forgets all the states visited.
+	 */
+	public void clear() {
+		Arrays.fill(table, 0L);
+		zeroVisited = false;
+		size = 0;
+	}
+	
+	/**
+	 * Doubles the size of the table, placing again all the hashes.
+	 */
+	private void grow() {
+		long[] old = table;
+		table = new long[old.length * 2];
+		for (long hash : old) {
+			if (hash != 0) {
+				int i = slot(hash, table.length);
+				while (table[i] != 0) {
+					i = (i + 1) & (table.length - 1);
+				}
+				table[i] = hash;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the first slot for a hash in a table of a given length.
+	 */
+	private static int slot(long hash, int length) {
+		return (int) (hash ^ (hash >>> 32)) & (length - 1);
+	}
+	
+}
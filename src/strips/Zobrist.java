@@ -0,0 +1,43 @@
+package strips;
+
+/**
+ * 
+ * The Zobrist class gives every predicate a 64-bit key, used for the
+ * Zobrist hash of a State: the XOR of the keys of all its predicates.
+ * As XOR is its own inverse, the hash is updated in constant time when
+ * a predicate is added or removed, and two states with the same
+ * predicates have the same hash, whatever the order they were added.
+ * 
+ * Instead of a table of random numbers, the key of a predicate is 
+ * obtained by mixing the identifiers of its name and values with the
+ * SplitMix64 finalizer, which spreads them like random numbers would.
+ * 
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class Zobrist {
+	
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	
+	/**
+	 * Returns the key of a predicate, given by its name and the current
+	 * values of its parameters.
+	 */
+	public static long key(Predicate pred) {
+		long h = mix(pred.getNameId() + GOLDEN_GAMMA);
+		for (Parameter p : pred.getParams()) {
+			h = mix(h + GOLDEN_GAMMA + p.getValueId());
+		}
+		return h;
+	}
+	
+	/**
+	 * The finalizer of SplitMix64.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+}
@@ -0,0 +1,102 @@
+package coffeeServer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import strips.Check;
+import strips.GroundAction;
+import strips.GroundProblem;
+import strips.GroundState;
+import strips.LinearPlanner;
+import strips.LinearPlannerBuilder;
+import strips.Operator;
+import strips.Predicate;
+import strips.State;
+import strips.TraceLevel;
+
+/**
+ *
+ * Tests that a GroundState follows the lifted State: the plan of every
+ * bundled problem is applied to both of them, action by action, and they
+ * must have the same facts after every step. It is run from the folder
+ * of the problems.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class GroundStateTest {
+
+	private static final String[] PROBLEMS = { "simple_problem.txt", "example_problem.txt",
+			"problem1.txt", "problem2.txt", "problem3.txt", "problem4.txt", "problem5.txt" };
+
+	public static void main(String[] args) throws Exception {
+		for (String problem : PROBLEMS) {
+			groundStateFollowsTheLiftedOne(problem);
+		}
+		Check.done("GroundStateTest");
+	}
+
+	/**
+	 * Solves a problem with grounding and applies its plan again from the
+	 * initial state, to a State and to a GroundState, comparing them.
+	 */
+	private static void groundStateFollowsTheLiftedOne(String problem) throws Exception {
+		LinearPlanner planner = createPlanner(problem);
+		State lifted = new State(planner.getCurrentState().getPredicates());
+		List<Operator> plan = planner.executePlan();
+		GroundProblem ground = planner.getGroundProblem();
+
+		Map<String, GroundAction> actions = new HashMap<>();
+		for (GroundAction action : ground.getActions()) {
+			actions.put(action.toString(), action);
+		}
+
+		GroundState state = new GroundState(ground);
+		Check.that(state.equals(new GroundState(ground, lifted)), problem + ": initial state");
+		compare(problem + ": initial state", ground, state, lifted);
+		for (int i=0; i<plan.size(); i++) {
+			Operator op = plan.get(i);
+			GroundAction action = actions.get(op.toString());
+			Check.that(action != null, problem + ": ground action of " + op);
+			Check.that(state.isApplicable(action), problem + ": " + op + " is applicable");
+
+			/* The copy keeps the state before the action */
+			GroundState before = state.copy();
+			State previous = new State(lifted.getPredicates());
+			state.apply(action);
+			lifted.applyOperator(op);
+			compare(problem + ": step " + i + ", " + op, ground, state, lifted);
+			compare(problem + ": copy before step " + i, ground, before, previous);
+		}
+		Check.that(state.isGoal(), problem + ": the plan reaches the goals");
+	}
+
+	/**
+	 * Checks that both states have the same facts, and that every fact of
+	 * the problem holds in one of them only if it holds in the other.
+	 */
+	private static void compare(String what, GroundProblem ground, GroundState state, State lifted) {
+		Check.equal(new HashSet<Predicate>(lifted.getPredicates()),
+				new HashSet<Predicate>(state.getPredicates()), what);
+		Check.equal(lifted.size(), state.size(), what + ", size");
+		for (int fact=0; fact<ground.getNumFacts(); fact++) {
+			if (lifted.contains(ground.getFact(fact)) != state.contains(fact)) {
+				Check.that(false, what + ", fact " + ground.getFact(fact));
+			}
+		}
+	}
+
+	private static LinearPlanner createPlanner(String problem) throws Exception {
+		ProblemReader reader = new ProblemReader(problem);
+		reader.readStates();
+		LinearPlannerBuilder builder = CoffeeServer.createBuilder(reader.getGrid());
+		builder.setInitialState(reader.getInitialState());
+		builder.setFinalState(reader.getGoalState());
+		builder.setTraceLevel(TraceLevel.OFF);
+		builder.setGrounding(true);
+		return builder.build();
+	}
+
+}
@@ -0,0 +1,124 @@
+package coffeeServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import strips.Check;
+import strips.GroundAction;
+import strips.GroundProblem;
+import strips.Intelligence;
+import strips.LinearPlanner;
+import strips.LinearPlannerBuilder;
+import strips.Operator;
+import strips.Parameter;
+import strips.PlanResult;
+import strips.Predicate;
+import strips.State;
+import strips.TraceLevel;
+
+/**
+ *
+ * Tests that grounding the bundled problems before planning keeps their
+ * plans: the planner built with grounding finds the same plan as the one
+ * built without it. It also tests that the grounded planner only tries
+ * the operators with a ground action that adds the goal. It is run from
+ * the folder of the problems.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class GroundingTest {
+
+	private static final String[] PROBLEMS = { "simple_problem.txt", "example_problem.txt",
+			"problem1.txt", "problem2.txt", "problem3.txt", "problem4.txt", "problem5.txt" };
+
+	public static void main(String[] args) throws Exception {
+		for (String problem : PROBLEMS) {
+			groundedPlanIsTheLiftedOne(problem);
+		}
+		groundActionsSelectTheAchiever();
+		Check.done("GroundingTest");
+	}
+
+	/**
+	 * Solves a problem with and without grounding, comparing the plans.
+	 */
+	private static void groundedPlanIsTheLiftedOne(String problem) throws Exception {
+		LinearPlanner lifted = createPlanner(problem, false);
+		LinearPlanner grounded = createPlanner(problem, true);
+		GroundProblem ground = grounded.getGroundProblem();
+		Check.that(ground != null && ground.isSolvable(), problem + " is grounded");
+		for (GroundAction action : ground.getActions()) {
+			Check.that(action.getPreconditions().length <= action.getOperator().getPreconditions().size(),
+					problem + ": facts of " + action);
+		}
+
+		List<Operator> expected = lifted.executePlan();
+		List<Operator> actual = grounded.executePlan();
+		Check.equal(expected.toString(), actual.toString(), problem + ": plan");
+		Check.equal(lifted.getCurrentState().getFluent("Steps"), 
+				grounded.getCurrentState().getFluent("Steps"), problem + ": steps");
+	}
+
+	/**
+	 * Achieves Done(a) with Finish, which comes first but needs Good(a), that
+	 * nothing adds, or with Craft. Finish has a ground action for b, so it is
+	 * not pruned, but none of its actions adds Done(a).
+	 */
+	private static void groundActionsSelectTheAchiever() throws Exception {
+		PlanResult lifted = createToyPlanner(false).executePlan(0L, 0, null);
+		Check.equal(PlanResult.Status.FAILED, lifted.getStatus(), "The lifted planner takes Finish");
+
+		LinearPlanner planner = createToyPlanner(true);
+		GroundProblem ground = planner.getGroundProblem();
+		int done = ground.getFactId(new Predicate("Done", new Parameter("i", "a")));
+		Check.equal(1, ground.getAchievers(done).size(), "Ground actions that add Done(a)");
+		Check.equal("Craft", ground.getAchievers(done).get(0).getOperator().getName(), "Achiever of Done(a)");
+		PlanResult grounded = planner.executePlan(0L, 0, null);
+		Check.that(grounded.isSolved(), "The grounded planner finds the plan: " + grounded.getError());
+		Check.equal("[Craft(a)]", grounded.getPlan().toString(), "Plan of the grounded planner");
+	}
+
+	private static LinearPlanner createToyPlanner(boolean grounding) throws Exception {
+		Parameter item = new Parameter("i", "_i");
+		Operator finish = new Operator("Finish", Arrays.asList(new Predicate("Good", item)),
+				Arrays.asList(new Predicate("Done", item)), new ArrayList<Predicate>(), item);
+		Operator craft = new Operator("Craft", Arrays.asList(new Predicate("Item", item)),
+				Arrays.asList(new Predicate("Done", item)), new ArrayList<Predicate>(), item);
+
+		LinearPlannerBuilder builder = new LinearPlannerBuilder();
+		builder.addPredicates(Arrays.asList(new Predicate("Good", item), new Predicate("Item", item),
+				new Predicate("Done", item)));
+		builder.addOperators(Arrays.asList(finish, craft));
+		builder.setInitialState(new State(Arrays.asList(new Predicate("Good", new Parameter("i", "b")),
+				new Predicate("Item", new Parameter("i", "a")))));
+		builder.setFinalState(new State(Arrays.asList(new Predicate("Done", new Parameter("i", "a")))));
+		builder.setIntelligence(new Intelligence() {
+			@Override
+			public List<Predicate> orderFinalState(State initialState, State finalState) {
+				return finalState.getPredicates();
+			}
+
+			@Override
+			public List<Predicate> orderPreconditions(Operator op) {
+				return op.getPreconditions();
+			}
+		});
+		builder.setTraceLevel(TraceLevel.OFF);
+		builder.setGrounding(grounding);
+		return builder.build();
+	}
+
+	private static LinearPlanner createPlanner(String problem, boolean grounding) throws Exception {
+		ProblemReader reader = new ProblemReader(problem);
+		reader.readStates();
+		LinearPlannerBuilder builder = CoffeeServer.createBuilder(reader.getGrid());
+		builder.setInitialState(reader.getInitialState());
+		builder.setFinalState(reader.getGoalState());
+		builder.setTraceLevel(TraceLevel.OFF);
+		builder.setGrounding(grounding);
+		return builder.build();
+	}
+
+}
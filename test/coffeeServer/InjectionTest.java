@@ -0,0 +1,97 @@
+package coffeeServer;
+
+import java.util.List;
+
+import strips.Check;
+import strips.LinearPlanner;
+import strips.LinearPlannerBuilder;
+import strips.PlannerListener;
+import strips.Predicate;
+import strips.Stackable;
+import strips.State;
+import strips.TraceLevel;
+
+/**
+ *
+ * Tests that the goals injected into a running planner are achieved
+ * without losing the other goals, and that injected predicates are read
+ * like the ones of a problem file. It is run from the folder of the problems.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class InjectionTest {
+
+	public static void main(String[] args) throws Exception {
+		predicatesAreReadWithSpaces();
+		goalsInjectedMidStackKeepTheOthers();
+		goalsInjectedAfterTheEndAreAchieved();
+		Check.done("InjectionTest");
+	}
+
+	/**
+	 * Reads predicates with spaces around their name and parameters.
+	 */
+	private static void predicatesAreReadWithSpaces() {
+		List<Predicate> preds = ProblemReader.readPredicates(" Petition ( o2, 1 ) ;Served(o2)");
+		Check.equal(2, preds.size(), "Predicates read");
+		Check.equal(ProblemReader.readPredicates("Petition(o2,1)").get(0), preds.get(0), 
+				"Predicate read with spaces");
+		Check.equal("1", preds.get(0).getParams().get(1).getValue(), "Number read with spaces");
+	}
+
+	/**
+	 * Injects a petition at o1 while the final state of problem5, which
+	 * ends with the robot at o36, is still stacked: serving it moves the
+	 * robot away, so it has to go back to o36.
+	 */
+	private static void goalsInjectedMidStackKeepTheOthers() throws Exception {
+		LinearPlanner planner = createPlanner("problem5.txt");
+		planner.addListener(new PlannerListener() {
+			@Override
+			public void iteration(int iteration, Stackable elem) {
+				if (iteration == 50) {
+					planner.inject(ProblemReader.readPredicates("Petition(o1, 1)"), 
+							ProblemReader.readPredicates("Served(o1)"));
+				}
+			}
+		});
+		planner.executePlan();
+		checkGoals(planner, "Mid-stack injection");
+	}
+
+	/**
+	 * Injects a petition once problem5 is solved and plans again.
+	 */
+	private static void goalsInjectedAfterTheEndAreAchieved() throws Exception {
+		LinearPlanner planner = createPlanner("problem5.txt");
+		planner.executePlan();
+		planner.inject(ProblemReader.readPredicates("Petition(o1, 2)"), 
+				ProblemReader.readPredicates("Served(o1)"));
+		Check.that(!planner.replan().isEmpty(), "Operators added after the injection");
+		checkGoals(planner, "Injection after the end");
+	}
+
+	/**
+	 * Checks that every goal of the final state holds in the current state.
+	 */
+	private static void checkGoals(LinearPlanner planner, String what) {
+		State state = planner.getCurrentState();
+		Check.that(planner.getFinalState().contains(ProblemReader.readPredicates("Served(o1)").get(0)), 
+				what + ": the goal is injected");
+		for (Predicate goal : planner.getFinalState().predicates()) {
+			Check.that(state.contains(goal), what + ": " + goal + " holds");
+		}
+	}
+
+	private static LinearPlanner createPlanner(String problem) throws Exception {
+		ProblemReader reader = new ProblemReader(problem);
+		reader.readStates();
+		LinearPlannerBuilder builder = CoffeeServer.createBuilder(reader.getGrid());
+		builder.setInitialState(reader.getInitialState());
+		builder.setFinalState(reader.getGoalState());
+		builder.setTraceLevel(TraceLevel.OFF);
+		return builder.build();
+	}
+
+}
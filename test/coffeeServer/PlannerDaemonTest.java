@@ -0,0 +1,100 @@
+package coffeeServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import strips.CancellationToken;
+import strips.Check;
+import strips.LinearPlanner;
+import strips.PlanCache;
+import strips.PlanResult;
+
+/**
+ *
+ * Tests that the PlannerDaemon answers every request it accepts, even when
+ * its planner fails with an Error, and that a request with more names than
+ * its symbol table allows is not answered as a malformed problem.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlannerDaemonTest {
+
+	private static final String REQUEST = "{\"id\":\"%s\",\"initial\":\"Robot-free;Robot-location(o1);"
+			+ "Machine(o4,3);Petition(o11,3);Steps(0)\",\"goal\":\"Robot-location(o2);Served(o11)\"}";
+
+	public static void main(String[] args) throws Exception {
+		errorsOfThePlannerAreAnswered();
+		fullSymbolTableIsNotMalformed();
+		Check.done("PlannerDaemonTest");
+	}
+
+	/**
+	 * Serves two requests with a cache whose planner throws an Error, with a
+	 * single worker: both of them are answered and the input is served.
+	 */
+	private static void errorsOfThePlannerAreAnswered() throws Exception {
+		PlannerDaemon daemon = new PlannerDaemon(10);
+		daemon.setCache(new PlanCache(4) {
+			@Override
+			public PlanResult executePlan(String domain, LinearPlanner planner, long timeout,
+					int maxIterations, CancellationToken token) {
+				throw new StackOverflowError();
+			}
+		});
+		daemon.start(1);
+		String output = serve(daemon, String.format(REQUEST, "r1") + "\n" + String.format(REQUEST, "r2"));
+		Check.that(output.contains("\"id\":\"r1\",\"status\":\"error\",\"error\":\"Planner failed: "
+				+ "java.lang.StackOverflowError\""), "Error answered for the first request: " + output);
+		Check.that(output.contains("\"id\":\"r2\",\"status\":\"error\""),
+				"The worker answers the second request: " + output);
+	}
+
+	/**
+	 * Serves a request that has more new names than the daemon allows, and
+	 * then one that fits.
+	 */
+	private static void fullSymbolTableIsNotMalformed() throws Exception {
+		PlannerDaemon daemon = new PlannerDaemon(10);
+		daemon.setSymbols(3);
+		daemon.start(1);
+		String output = serve(daemon, String.format(REQUEST, "r1"));
+		Check.that(output.contains("\"status\":\"error\",\"error\":\"Too many symbols: "),
+				"Full symbol table answered: " + output);
+		Check.that(!output.contains("Malformed"), "Not a malformed problem: " + output);
+
+		daemon.setSymbols(100);
+		output = serve(daemon, String.format(REQUEST, "r2"));
+		Check.that(output.contains("\"id\":\"r2\",\"status\":\"solved\""),
+				"The next request is solved: " + output);
+	}
+
+	/**
+	 * Serves the requests of an input and returns the answers, failing if
+	 * they are not all given in 10 seconds.
+	 */
+	private static String serve(PlannerDaemon daemon, String input) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r);
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			Future<?> served = executor.submit(() -> {
+				daemon.serve(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+				return null;
+			});
+			served.get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,105 @@
+package strips;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * Tests that the snapshots taken by the AsyncTraceSink give the same texts
+ * as the elements they copy, even after the elements change, and that the
+ * whole log is written without closing it.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class AsyncTraceSinkTest {
+
+	public static void main(String[] args) throws Exception {
+		snapshotsWriteLikeTheElements();
+		logIsWrittenWithoutClosing();
+		Check.done("AsyncTraceSinkTest");
+	}
+
+	/**
+	 * Takes a snapshot of a state with a fluent and a stack with every kind
+	 * of element, and binds a variable of the stack afterwards.
+	 */
+	private static void snapshotsWriteLikeTheElements() {
+		State state = new State(Arrays.asList(new Predicate("Item", new Parameter("i", "a")),
+				new Predicate("Ready")));
+		state.setFluent("Steps", 3L);
+		State goal = new State(Arrays.asList(new Predicate("Done")));
+		goal.setFluent("Cost", 7L);
+
+		Parameter item = new Parameter("i", "_i");
+		Operator prepare = new Operator("Prepare", Arrays.asList(new Predicate("Item", item)),
+				Arrays.asList(new Predicate("Ready")), new ArrayList<Predicate>(), item);
+		Operator start = new Operator("Start", new ArrayList<Predicate>(),
+				Arrays.asList(new Predicate("Ready")), new ArrayList<Predicate>());
+		PlannerStack stack = new PlannerStack();
+		stack.push(goal);
+		stack.push(new State(new ArrayList<Predicate>()));
+		stack.push(new PredicateSet(prepare.getPreconditions()));
+		stack.push(start);
+		stack.push(prepare);
+		stack.push(prepare.getPreconditions().get(0));
+
+		List<String> texts = new ArrayList<>();
+		for (int i=stack.getStack().size()-1; i>=0; i--) {
+			texts.add(stack.getStack().get(i).toString());
+		}
+		IterationSnapshot snapshot = new IterationSnapshot(4, state, stack);
+		Check.equal(state.toString(), snapshot.getState(), "Text of the state");
+		Check.equal(texts, snapshot.getStack(), "Texts of the stack");
+
+		/* The snapshot keeps the values it copied */
+		String before = snapshot.getStack().get(0);
+		stack.translateParameters(prepare.getPreconditions().get(0).getParams().get(0),
+				new Parameter("i", "a"));
+		state.setFluent("Steps", 4L);
+		Check.that(!before.equals(stack.getStack().get(stack.getStack().size()-1).toString()),
+				"The predicate of the stack changed");
+		Check.equal(before, snapshot.getStack().get(0), "Text of the predicate copied");
+		Check.equal("[Item(a); Ready; Steps=3]", snapshot.getState(), "Text of the state copied");
+	}
+
+	/**
+	 * Solves a problem with the constructor that logs to a PrintStream, and
+	 * reads the log without closing it.
+	 */
+	private static void logIsWrittenWithoutClosing() throws Exception {
+		Operator finish = new Operator("Finish", new ArrayList<Predicate>(),
+				Arrays.asList(new Predicate("Done")), new ArrayList<Predicate>());
+		Intelligence intelligence = new Intelligence() {
+			@Override
+			public List<Predicate> orderFinalState(State initialState, State finalState) {
+				return finalState.getPredicates();
+			}
+
+			@Override
+			public List<Predicate> orderPreconditions(Operator op) {
+				return op.getPreconditions();
+			}
+		};
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		LinearPlanner planner = new LinearPlanner(Arrays.asList(new Predicate("Done")),
+				Arrays.asList(finish), new State(new ArrayList<Predicate>()),
+				new State(Arrays.asList(new Predicate("Done"))), intelligence,
+				new PrintStream(output, true, "UTF-8"));
+
+		planner.executePlan();
+		String log = new String(output.toByteArray(), StandardCharsets.UTF_8);
+		Check.that(log.contains("Iteration: " + planner.getIteration()), "Last iteration written: " + log);
+
+		planner.logPlan();
+		planner.logSteps();
+		log = new String(output.toByteArray(), StandardCharsets.UTF_8);
+		Check.that(log.endsWith("Number of iterations: " + planner.getIteration() + System.lineSeparator()),
+				"Steps written: " + log);
+	}
+
+}
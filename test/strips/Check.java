@@ -0,0 +1,41 @@
+package strips;
+
+/**
+ *
+ * Check has the assertions used by the tests. The tests are plain classes
+ * with a main method, run with the classes of the project in the classpath,
+ * and every assertion that fails throws an AssertionError that stops them.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class Check {
+
+	private static int passed = 0;
+
+	/**
+	 * Fails with a message if a condition does not hold.
+	 */
+	public static void that(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		passed++;
+	}
+
+	/**
+	 * Fails if two values are not equal, showing both of them.
+	 */
+	public static void equal(Object expected, Object actual, String what) {
+		that((expected == null) ? actual == null : expected.equals(actual),
+				what + ": expected " + expected + " but was " + actual);
+	}
+
+	/**
+	 * Writes the number of assertions passed by a test.
+	 */
+	public static void done(String test) {
+		System.out.println(test + ": " + passed + " checks passed");
+	}
+
+}
@@ -0,0 +1,159 @@
+package strips;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ *
+ * Tests that a PlanCache reads again the plans of its file, skips the
+ * lines of the file that are corrupt or truncated, and solves again the
+ * problems whose plan kept no longer reaches the goal.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlanCacheTest {
+
+	private static final String DOMAIN = "kitchen";
+
+	public static void main(String[] args) throws Exception {
+		File file = File.createTempFile("plans", ".txt");
+		file.deleteOnExit();
+		file.delete();
+
+		String record = storeIsReadAgain(file);
+		badLinesAreSkipped(file, record);
+		stalePlansAreMisses(file);
+		Check.done("PlanCacheTest");
+	}
+
+	/**
+	 * Solves the problem with a cache that keeps its plan in the file, and
+	 * applies the plan from another cache that reads it. Returns the line
+	 * written.
+	 */
+	private static String storeIsReadAgain(File file) throws Exception {
+		PlanCache cache = new PlanCache(4, file);
+		List<Operator> plan = new ArrayList<>(cache.executePlan(DOMAIN, createPlanner()));
+		cache.close();
+		Check.equal("[Fill(a), Boil(a)]", plan.toString(), "Plan found");
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		Check.equal(1, lines.size(), "Lines written");
+
+		cache = new PlanCache(4, file);
+		Check.equal(1, cache.size(), "Plans read");
+		LinearPlanner planner = createPlanner();
+		PlanResult result = cache.executePlan(DOMAIN, planner, 0L, 0, null);
+		cache.close();
+		Check.that(result.isSolved(), "The plan read is applied");
+		Check.equal(plan.toString(), result.getPlan().toString(), "Plan read");
+		Check.equal(1L, cache.getHits(), "Hits");
+		Check.equal(2L, result.getMetrics().getCounter(PlannerMetrics.Counter.APPLICATIONS), 
+				"Operators applied from the cache");
+		Check.equal(0L, result.getMetrics().getCounter(PlannerMetrics.Counter.ITERATIONS), 
+				"Iterations of a plan from the cache");
+		Check.that(planner.getCurrentState().contains(new Predicate("Hot", cup("a"))), 
+				"The goal holds");
+		return lines.get(0);
+	}
+
+	/**
+	 * Reads a file with the line of a plan after some bad ones: the line
+	 * truncated, with another plan, in the format without checksum, with
+	 * a wrong number of operators, and not a record at all.
+	 */
+	private static void badLinesAreSkipped(File file, String record) throws Exception {
+		String[] fields = record.split("\t");
+		write(file, record.substring(0, record.length() - 5),
+				record.replace("Boil(a)", "Boil(b)"),
+				fields[0] + "\t" + fields[2],
+				fields[0] + "\t1\tFill(a);Boil(a)\t" + checksum(fields[0] + "\t1\tFill(a);Boil(a)"),
+				"garbage",
+				record);
+
+		PlanCache cache = new PlanCache(4, file);
+		cache.close();
+		Check.equal(1, cache.size(), "Plans read from the bad file");
+		Check.equal(5L, cache.getRejected(), "Lines rejected");
+	}
+
+	/**
+	 * Reads well formed plans for the problem that do not reach its goal
+	 * or use an operator that is not available, and solves it again.
+	 */
+	private static void stalePlansAreMisses(File file) throws Exception {
+		String key = PlanCache.fingerprint(DOMAIN, createPlanner());
+		for (String stale : Arrays.asList("Fill(a)", "Boil(a)", "Heat(a)", "Boil(a,b)")) {
+			String record = key + "\t1\t" + stale;
+			write(file, record + "\t" + checksum(record));
+
+			PlanCache cache = new PlanCache(4, file);
+			Check.equal(1, cache.size(), "Stale plan " + stale + " read");
+			LinearPlanner planner = createPlanner();
+			List<Operator> plan = cache.executePlan(DOMAIN, planner);
+			cache.close();
+			Check.equal("[Fill(a), Boil(a)]", plan.toString(), "Plan found instead of " + stale);
+			Check.equal(0L, cache.getHits(), "Hits of " + stale);
+			Check.equal(1L, cache.getMisses(), "Misses of " + stale);
+			Check.equal(1L, cache.getRejected(), "Rejected plans of " + stale);
+			Check.that(planner.getIteration() > 0, "The algorithm is executed for " + stale);
+		}
+	}
+
+	/**
+	 * Creates a planner that has to fill the cup a and boil it.
+	 */
+	private static LinearPlanner createPlanner() throws Exception {
+		Parameter x = new Parameter("c", "_x");
+		Operator fill = new Operator("Fill", Arrays.asList(new Predicate("Cup", x)),
+				Arrays.asList(new Predicate("Water", x)), new ArrayList<Predicate>(), x);
+		Operator boil = new Operator("Boil", Arrays.asList(new Predicate("Water", x)),
+				Arrays.asList(new Predicate("Hot", x)), new ArrayList<Predicate>(), x);
+
+		LinearPlannerBuilder builder = new LinearPlannerBuilder();
+		builder.addPredicates(Arrays.asList(new Predicate("Cup", x), new Predicate("Water", x), 
+				new Predicate("Hot", x)));
+		builder.addOperators(Arrays.asList(fill, boil));
+		builder.setInitialState(new State(new ArrayList<>(Arrays.asList(new Predicate("Cup", cup("a"))))));
+		builder.setFinalState(new State(new ArrayList<>(Arrays.asList(new Predicate("Hot", cup("a"))))));
+		builder.setIntelligence(new Intelligence() {
+			@Override
+			public List<Predicate> orderFinalState(State initialState, State finalState) {
+				return finalState.getPredicates();
+			}
+
+			@Override
+			public List<Predicate> orderPreconditions(Operator op) {
+				return op.getPreconditions();
+			}
+		});
+		builder.setTraceLevel(TraceLevel.OFF);
+		return builder.build();
+	}
+
+	private static Parameter cup(String name) {
+		return new Parameter("c", name);
+	}
+
+	private static void write(File file, String... lines) throws Exception {
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			for (String line : lines) {
+				out.print(line + "\n");
+			}
+		}
+	}
+
+	private static String checksum(String record) {
+		CRC32 crc = new CRC32();
+		crc.update(record.getBytes(StandardCharsets.UTF_8));
+		return Long.toHexString(crc.getValue());
+	}
+
+}
@@ -0,0 +1,103 @@
+package strips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Tests that a PlanStream gives the operators of the plan, and that the
+ * thread iterating it gets the Error that kills the planner thread
+ * instead of waiting forever.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class PlanStreamTest {
+
+	public static void main(String[] args) throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			streamGivesThePlan(executor);
+			errorOfThePlannerEndsTheStream(executor);
+		} finally {
+			executor.shutdownNow();
+		}
+		Check.done("PlanStreamTest");
+	}
+
+	private static void streamGivesThePlan(ExecutorService executor) throws Exception {
+		PlanStream stream = PlanStream.start(createPlanner());
+		Future<List<String>> names = executor.submit(() -> {
+			List<String> ops = new ArrayList<>();
+			for (Operator op : stream) {
+				ops.add(op.getName());
+			}
+			return ops;
+		});
+		Check.equal(Arrays.asList("Fill", "Boil"), names.get(10, TimeUnit.SECONDS), "Plan streamed");
+	}
+
+	/**
+	 * Makes the planner thread die with a StackOverflowError at its
+	 * first iteration.
+	 */
+	private static void errorOfThePlannerEndsTheStream(ExecutorService executor) throws Exception {
+		LinearPlanner planner = createPlanner();
+		planner.addListener(new PlannerListener() {
+			@Override
+			public void iteration(int iteration, Stackable elem) {
+				throw new StackOverflowError("planner thread");
+			}
+		});
+		PlanStream stream = PlanStream.start(planner);
+		Future<Throwable> thrown = executor.submit(() -> {
+			try {
+				stream.iterator().hasNext();
+				return null;
+			} catch (Throwable e) {
+				return e;
+			}
+		});
+		Throwable e = thrown.get(10, TimeUnit.SECONDS);
+		Check.that(e instanceof StackOverflowError, "Error passed to the stream: " + e);
+	}
+
+	/**
+	 * Creates a planner that has to fill the cup a and boil it.
+	 */
+	private static LinearPlanner createPlanner() throws Exception {
+		Parameter x = new Parameter("c", "_x");
+		Operator fill = new Operator("Fill", Arrays.asList(new Predicate("Cup", x)),
+				Arrays.asList(new Predicate("Water", x)), new ArrayList<Predicate>(), x);
+		Operator boil = new Operator("Boil", Arrays.asList(new Predicate("Water", x)),
+				Arrays.asList(new Predicate("Hot", x)), new ArrayList<Predicate>(), x);
+
+		LinearPlannerBuilder builder = new LinearPlannerBuilder();
+		builder.addPredicates(Arrays.asList(new Predicate("Cup", x), new Predicate("Water", x), 
+				new Predicate("Hot", x)));
+		builder.addOperators(Arrays.asList(fill, boil));
+		builder.setInitialState(new State(new ArrayList<>(Arrays.asList(
+				new Predicate("Cup", new Parameter("c", "a"))))));
+		builder.setFinalState(new State(new ArrayList<>(Arrays.asList(
+				new Predicate("Hot", new Parameter("c", "a"))))));
+		builder.setIntelligence(new Intelligence() {
+			@Override
+			public List<Predicate> orderFinalState(State initialState, State finalState) {
+				return finalState.getPredicates();
+			}
+
+			@Override
+			public List<Predicate> orderPreconditions(Operator op) {
+				return op.getPreconditions();
+			}
+		});
+		builder.setTraceLevel(TraceLevel.OFF);
+		return builder.build();
+	}
+
+}
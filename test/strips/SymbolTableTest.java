@@ -0,0 +1,80 @@
+package strips;
+
+/**
+ *
+ * Tests that the table of a problem sees the symbols of its domain, keeps
+ * its new symbols to itself and can be forgotten, and that a table that
+ * is full still gives the symbols it has.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class SymbolTableTest {
+
+	public static void main(String[] args) {
+		problemTableIsOnTopOfTheDomain();
+		fullTableKeepsItsSymbols();
+		Check.done("SymbolTableTest");
+	}
+
+	/**
+	 * Interns the names of a domain and the values of two problems, each one
+	 * in a table of its own on top of the domain.
+	 */
+	private static void problemTableIsOnTopOfTheDomain() {
+		SymbolTable domain = new SymbolTable();
+		SymbolTable previous = SymbolTable.use(domain);
+		Predicate robot = new Predicate("Robot-location", new Parameter("o", "_x"));
+		int name = domain.lookup("Robot-location");
+		Check.that(name >= 0, "The domain has the name of the predicate");
+
+		SymbolTable first = new SymbolTable(domain, 10);
+		SymbolTable.use(first);
+		Predicate located = new Predicate("Robot-location", new Parameter("o", "o7"));
+		Check.equal(name, first.lookup("Robot-location"), "Identifier of the name in the problem");
+		Check.equal(-1, domain.lookup("o7"), "The domain does not have the values of the problem");
+		Check.equal("o7", first.symbol(located.getParams().get(0).getValueId()),
+				"Value of the problem");
+		Check.that(domain.isFrozen(), "The domain cannot register new symbols");
+
+		boolean closed = false;
+		try {
+			domain.intern("Served");
+		} catch (IllegalStateException e) {
+			closed = true;
+		}
+		Check.that(closed, "The domain refuses new symbols");
+
+		/* A second problem starts where the domain ends, as the first one is forgotten */
+		SymbolTable second = new SymbolTable(domain, 10);
+		SymbolTable.use(second);
+		Check.equal(-1, second.lookup("o7"), "The second problem does not see the first one");
+		Check.equal(first.intern("o7"), second.intern("o8"), "Identifiers reused by other problems");
+		Check.equal(domain.size() + 1, second.size(), "Size of the second problem");
+		Check.equal("Robot-location(_x)", robot.toString(), "Predicate of the domain");
+
+		SymbolTable.use(previous);
+		Check.that(SymbolTable.current() == previous, "The thread uses its table again");
+	}
+
+	/**
+	 * Fills a table and interns a symbol it has and one it does not have.
+	 */
+	private static void fullTableKeepsItsSymbols() {
+		SymbolTable table = new SymbolTable(2);
+		int a = table.intern("a");
+		table.intern("b");
+		Check.equal(a, table.intern("a"), "Identifier of a known symbol");
+
+		boolean full = false;
+		try {
+			table.intern("c");
+		} catch (IllegalStateException e) {
+			full = true;
+		}
+		Check.that(full, "A full table refuses new symbols");
+		Check.equal(2, table.size(), "Size of the full table");
+		Check.equal("b", table.symbol(1), "Symbol of the full table");
+	}
+
+}
@@ -0,0 +1,246 @@
+package strips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Tests that rolling back a Trail restores the bindings exactly as they
+ * were at the mark, and that the backtracking mode of the LinearPlanner
+ * finds a plan after undoing a failed instance and only returns the
+ * operators it has committed when a limit stops it.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class TrailTest {
+
+	public static void main(String[] args) throws Exception {
+		rollbackRestoresUnionsAndBindings();
+		backtrackingTakesTheNextInstance();
+		limitsKeepOnlyCommittedOperators();
+		operatorsAreRegisteredByTheirArguments();
+		Check.done("TrailTest");
+	}
+
+	/**
+	 * Unifies three variables, binds the group and registers a new variable
+	 * with the same name, and rolls everything back.
+	 */
+	private static void rollbackRestoresUnionsAndBindings() {
+		State state = new State(new ArrayList<Predicate>());
+		PlannerStack stack = new PlannerStack();
+		Trail trail = new Trail(state, stack);
+
+		Parameter x1 = new Parameter("o", "_x");
+		stack.push(new Predicate("P", x1));
+		Variable a = x1.getVariable();
+
+		/* Variables of the same name created by other stacks, to be unified */
+		Parameter x2 = new Parameter("o", "_x");
+		Parameter x3 = new Parameter("o", "_x");
+		new PlannerStack().push(new Predicate("P", x2));
+		new PlannerStack().push(new Predicate("P", x3));
+		Variable b = x2.getVariable();
+		Variable c = x3.getVariable();
+
+		Bindings bindings = stack.getBindings();
+		String before = describe(bindings, a, b, c);
+		int mark = trail.mark();
+
+		stack.push(new Predicate("Q", x2));
+		stack.push(new Predicate("Q", x3));
+		Check.that(b.find() == a && c.find() == a, "The variables are unified");
+		Check.equal(1, a.getRank(), "Rank of the joined group");
+
+		stack.translateParameters(x1, new Parameter("o", "o1"));
+		Check.equal("o1", x3.getValue(), "Value of the unified parameter");
+		Parameter x4 = new Parameter("o", "_x");
+		stack.push(new Predicate("R", x4));
+		Check.that(bindings.getActive().get(x4.getValueId()) == x4.getVariable(), 
+				"The name is used by a new variable");
+
+		trail.rollbackTo(mark);
+		Check.equal(before, describe(bindings, a, b, c), "Bindings after the rollback");
+		Check.equal("_x", x2.getValue(), "Value of the separated parameter");
+		Check.equal(1, stack.getStack().size(), "Elements stacked after the rollback");
+	}
+
+	/**
+	 * Solves a problem where the first instance of a precondition leads to
+	 * a goal that no operator achieves, so the planner has to backtrack.
+	 */
+	private static void backtrackingTakesTheNextInstance() throws Exception {
+		Parameter item = new Parameter("i", "_i");
+		Operator finish = new Operator("Finish", 
+				Arrays.asList(new Predicate("Item", item), new Predicate("Good", item)),
+				Arrays.asList(new Predicate("Done")), new ArrayList<Predicate>(), item);
+
+		LinearPlannerBuilder builder = new LinearPlannerBuilder();
+		builder.addPredicates(Arrays.asList(new Predicate("Item", item), 
+				new Predicate("Good", item), new Predicate("Done")));
+		builder.addOperators(Arrays.asList(finish));
+		builder.setInitialState(new State(Arrays.asList(
+				new Predicate("Item", new Parameter("i", "a")),
+				new Predicate("Item", new Parameter("i", "b")),
+				new Predicate("Good", new Parameter("i", "b")))));
+		builder.setFinalState(new State(Arrays.asList(new Predicate("Done"))));
+		builder.setIntelligence(new Intelligence() {
+			@Override
+			public List<Predicate> orderFinalState(State initialState, State finalState) {
+				return finalState.getPredicates();
+			}
+
+			/* Item is treated first, so the instance a is tried before b */
+			@Override
+			public List<Predicate> orderPreconditions(Operator op) {
+				List<Predicate> precs = new ArrayList<>(op.getPreconditions());
+				Collections.reverse(precs);
+				return precs;
+			}
+		});
+		builder.setTraceLevel(TraceLevel.OFF);
+		builder.setBacktracking(10, 1000);
+		LinearPlanner planner = builder.build();
+
+		PlanResult result = planner.executePlan(0L, 0, null);
+		Check.that(result.isSolved(), "The plan is found: " + result.getError());
+		Check.equal("[Finish(b)]", result.getPlan().toString(), "Plan");
+		Check.that(result.getMetrics().getCounter(PlannerMetrics.Counter.BACKTRACKS) > 0, 
+				"The planner backtracked");
+		Check.equal(4, planner.getCurrentState().size(), "Predicates of the final state");
+		Check.that(planner.getStack().getBindings().getActive().isEmpty(), 
+				"No variable is left in use");
+	}
+
+	/**
+	 * Stops a planner in backtracking mode after every number of iterations
+	 * until it finds the plan, which prepares an item and then finishes it.
+	 * The plan of a planner stopped only has committed operators, even if
+	 * it has applied the first one, and it is completed by executing the
+	 * planner again.
+	 */
+	private static void limitsKeepOnlyCommittedOperators() throws Exception {
+		boolean applied = false;
+		for (int limit=1; ; limit++) {
+			LinearPlanner planner = createTwoStepPlanner();
+			List<Operator> committed = new ArrayList<>();
+			planner.addListener(new PlannerListener() {
+				@Override
+				public void committed(Operator op) {
+					committed.add(op);
+				}
+			});
+
+			PlanResult result = planner.executePlan(0L, limit, null);
+			if (result.isSolved()) {
+				Check.equal("[Prepare, Finish]", names(result.getPlan()), "Plan found with no limit hit");
+				break;
+			}
+			Check.equal(PlanResult.Status.ITERATION_LIMIT, result.getStatus(), "Status with " + limit + " iterations");
+			Check.that(result.getPlan().isEmpty(), "No operator committed with " + limit + " iterations");
+			Check.that(committed.isEmpty(), "No operator notified as committed");
+			if (!planner.getPlan().isEmpty()) {
+				/* The operator applied is kept, and committed once the plan is found */
+				applied = true;
+				result = planner.executePlan(0L, 0, null);
+				Check.that(result.isSolved(), "The plan is found again: " + result.getError());
+				Check.equal("[Prepare, Finish]", names(result.getPlan()), "Plan after the limit");
+				Check.equal(result.getPlan(), committed, "Operators committed after the limit");
+			}
+		}
+		Check.that(applied, "A limit was hit with a tentative operator");
+	}
+
+	/**
+	 * Pushes an operator whose tables are not resolved yet, and one with a
+	 * table of its own, and binds their variables: the tables resolved after
+	 * the push, and the table of its own, see the values.
+	 */
+	private static void operatorsAreRegisteredByTheirArguments() {
+		Parameter item = new Parameter("i", "_i");
+		Parameter place = new Parameter("p", "_p");
+		Operator move = new Operator("Move", Arrays.asList(new Predicate("At", item, place)),
+				Arrays.asList(new Predicate("Moved", item)), new ArrayList<Predicate>(), item);
+		Operator copy = move.instantiate(new Predicate("Moved", new Parameter("i", "_i")));
+		Operator own = move.instantiate(new Predicate("Moved", new Parameter("i", "_i")));
+		Parameter other = new Parameter("p", "_q");
+		own.setDeletes(Arrays.asList(new Predicate("At", new Parameter("i", "_i"), other)));
+
+		PlannerStack stack = new PlannerStack();
+		stack.push(copy);
+		stack.push(own);
+		Check.that(stack.getBindings().getActive().containsKey(other.getValueId()),
+				"Variable of the table of its own registered");
+		stack.translateParameters(copy.getArguments()[0], new Parameter("i", "a"));
+		stack.translateParameters(copy.getArguments()[1], new Parameter("p", "o1"));
+		stack.translateParameters(other, new Parameter("p", "o2"));
+		Check.equal("[At(a, o1)]", copy.getPreconditions().toString(), "Preconditions resolved after the push");
+		Check.equal("[Moved(a)]", own.getAdds().toString(), "Adds of the other operator");
+		Check.equal("[At(a, o2)]", own.getDeletes().toString(), "Table of its own");
+	}
+
+	/**
+	 * Creates a planner in backtracking mode where Finish needs the
+	 * Ready predicate added by Prepare.
+	 */
+	private static LinearPlanner createTwoStepPlanner() throws Exception {
+		Operator prepare = new Operator("Prepare", new ArrayList<Predicate>(),
+				Arrays.asList(new Predicate("Ready")), new ArrayList<Predicate>());
+		Operator finish = new Operator("Finish", Arrays.asList(new Predicate("Ready")),
+				Arrays.asList(new Predicate("Done")), new ArrayList<Predicate>());
+
+		LinearPlannerBuilder builder = new LinearPlannerBuilder();
+		builder.addPredicates(Arrays.asList(new Predicate("Ready"), new Predicate("Done")));
+		builder.addOperators(Arrays.asList(prepare, finish));
+		builder.setInitialState(new State(new ArrayList<Predicate>()));
+		builder.setFinalState(new State(Arrays.asList(new Predicate("Done"))));
+		builder.setIntelligence(new Intelligence() {
+			@Override
+			public List<Predicate> orderFinalState(State initialState, State finalState) {
+				return finalState.getPredicates();
+			}
+
+			@Override
+			public List<Predicate> orderPreconditions(Operator op) {
+				return op.getPreconditions();
+			}
+		});
+		builder.setTraceLevel(TraceLevel.OFF);
+		builder.setBacktracking(10, 1000);
+		return builder.build();
+	}
+
+	/**
+	 * Returns the names of the operators of a plan.
+	 */
+	private static String names(List<Operator> plan) {
+		List<String> names = new ArrayList<>();
+		for (Operator op : plan) {
+			names.add(op.getName());
+		}
+		return names.toString();
+	}
+
+	/**
+	 * Describes the variables in use and the group, rank and value of
+	 * some variables, telling them by their position in vars.
+	 */
+	private static String describe(Bindings bindings, Variable... vars) {
+		List<Variable> known = Arrays.asList(vars);
+		StringBuilder s = new StringBuilder();
+		for (Map.Entry<Integer, Variable> entry : bindings.getActive().entrySet()) {
+			s.append(entry.getKey()).append("->").append(known.indexOf(entry.getValue())).append(' ');
+		}
+		for (Variable var : vars) {
+			s.append(known.indexOf(var)).append(':').append(known.indexOf(var.find())).append(',')
+				.append(var.getRank()).append(',').append(var.isBound()).append(',')
+				.append(var.getValue()).append(' ');
+		}
+		return s.toString();
+	}
+
+}
@@ -0,0 +1,118 @@
+package strips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ *
+ * Tests that VisitedStates detects the states visited again and forgets
+ * the ones removed, and that the backtracking mode of the LinearPlanner
+ * leaves the branches that go back to a state already reached.
+ *
+ * @author Javier Beltran, Jorge Rodriguez
+ *
+ */
+public class VisitedStatesTest {
+
+	public static void main(String[] args) throws Exception {
+		revisitedStateIsDetected();
+		removeKeepsTheOtherHashes();
+		backtrackingLeavesLoops();
+		Check.done("VisitedStatesTest");
+	}
+
+	/**
+	 * Visits a state, changes it and changes it back, so its Zobrist hash
+	 * is the same as the first time.
+	 */
+	private static void revisitedStateIsDetected() {
+		State state = new State(new ArrayList<>(Arrays.asList(new Predicate("A"))));
+		VisitedStates visited = new VisitedStates();
+		Check.that(visited.visit(state), "The first state is new");
+
+		state.removePredicate(new Predicate("A"));
+		state.addPredicate(new Predicate("B"));
+		Check.that(visited.visit(state), "The changed state is new");
+
+		state.removePredicate(new Predicate("B"));
+		state.addPredicate(new Predicate("A"));
+		Check.that(visited.isVisited(state), "The first state is known again");
+		Check.that(!visited.visit(state), "The first state is not visited twice");
+		Check.equal(2, visited.size(), "States visited");
+	}
+
+	/**
+	 * Adds and removes many hashes, the zero hash among them, comparing the
+	 * table with a HashSet.
+	 */
+	private static void removeKeepsTheOtherHashes() {
+		Random random = new Random(42);
+		VisitedStates visited = new VisitedStates();
+		Set<Long> expected = new HashSet<>();
+		List<Long> added = new ArrayList<>();
+		for (int i=0; i<20000; i++) {
+			/* Few distinct hashes, so that the runs of the table get long */
+			long hash = (random.nextInt(4) == 0) ? 0 : random.nextInt(5000) * 0x9E3779B97F4A7C15L;
+			if (random.nextBoolean()) {
+				Check.equal(expected.add(hash), visited.add(hash), "Adding " + hash);
+				added.add(hash);
+			} else if (!added.isEmpty()) {
+				long old = added.get(random.nextInt(added.size()));
+				Check.equal(expected.remove(old), visited.remove(old), "Removing " + old);
+			}
+		}
+		Check.equal(expected.size(), visited.size(), "Hashes kept");
+		for (long hash : added) {
+			Check.equal(expected.contains(hash), visited.contains(hash), "Contains " + hash);
+		}
+	}
+
+	/**
+	 * Solves a problem where the first achiever of a goal undoes the goal
+	 * achieved before, going back to the initial state: the plan has to
+	 * take the other achiever instead of going round in the loop.
+	 */
+	private static void backtrackingLeavesLoops() throws Exception {
+		Predicate a = new Predicate("A");
+		Predicate b = new Predicate("B");
+		Operator toB = new Operator("ToB", Arrays.asList(a), Arrays.asList(b), Arrays.asList(a));
+		Operator toA = new Operator("ToA", Arrays.asList(b), Arrays.asList(a), Arrays.asList(b));
+		Operator toAB = new Operator("ToAB", Arrays.asList(b), Arrays.asList(a), new ArrayList<Predicate>());
+
+		LinearPlannerBuilder builder = new LinearPlannerBuilder();
+		builder.addPredicates(Arrays.asList(a, b));
+		builder.addOperators(Arrays.asList(toB, toA, toAB));
+		builder.setInitialState(new State(new ArrayList<>(Arrays.asList(new Predicate("A")))));
+		builder.setFinalState(new State(new ArrayList<>(Arrays.asList(new Predicate("A"), new Predicate("B")))));
+		builder.setIntelligence(new Intelligence() {
+			/* B is achieved first, so achieving A may undo it */
+			@Override
+			public List<Predicate> orderFinalState(State initialState, State finalState) {
+				return Arrays.asList(new Predicate("B"), new Predicate("A"));
+			}
+
+			@Override
+			public List<Predicate> orderPreconditions(Operator op) {
+				return op.getPreconditions();
+			}
+		});
+		builder.setTraceLevel(TraceLevel.OFF);
+		builder.setBacktracking(10, 1000);
+		LinearPlanner planner = builder.build();
+
+		PlanResult result = planner.executePlan(0L, 0, null);
+		Check.that(result.isSolved(), "The plan is found: " + result.getError());
+		List<String> names = new ArrayList<>();
+		for (Operator op : result.getPlan()) {
+			names.add(op.getName());
+		}
+		Check.equal(Arrays.asList("ToB", "ToAB"), names, "Plan");
+		Check.that(result.getMetrics().getCounter(PlannerMetrics.Counter.BACKTRACKS) > 0, 
+				"The planner backtracked");
+	}
+
+}